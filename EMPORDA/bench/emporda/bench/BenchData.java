@@ -0,0 +1,230 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda.bench;
+
+import GiciException.ParameterException;
+import emporda.CONS;
+import emporda.Parameters;
+import emporda.Predictor;
+import emporda.PredictorFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Synthetic data shared by the benchmarks. The images are hyperspectral cubes
+ * with a smooth spatial structure, a spectral profile that changes slowly from
+ * band to band and some noise, so the predictor and the entropy coders see
+ * residuals with a realistic distribution. They are generated from a fixed seed,
+ * so all the runs use the same data.
+ * <p>
+ * The option files are read from the directory given by the system property
+ * emporda.options, doc/OptionFiles by default.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public final class BenchData {
+
+	/**
+	 * Seed of the synthetic images
+	 */
+	public static final long SEED = 0x454d504fL;
+
+	/**
+	 * Returns the geometry of an unsigned 16 bit big endian image.
+	 * 
+	 * @param bands is the number of bands
+	 * @param height is the height of the image
+	 * @param width is the width of the image
+	 * @return the image geometry
+	 */
+	public static int[] geometry(int bands, int height, int width) {
+		int[] geo = new int[CONS.GEO_SIZE];
+		geo[CONS.BANDS] = bands;
+		geo[CONS.HEIGHT] = height;
+		geo[CONS.WIDTH] = width;
+		geo[CONS.TYPE] = 2;
+		geo[CONS.ENDIANESS] = 0;
+		geo[CONS.RGB] = 0;
+		return geo;
+	}
+
+	/**
+	 * Loads the parameters of an option file.
+	 * 
+	 * @param optionFile is the name of the option file
+	 * @param geo is the image geometry
+	 * @return the parameters
+	 * @throws IOException if the option file can not be read
+	 * @throws ParameterException if the option file has an invalid parameter
+	 */
+	public static Parameters parameters(String optionFile, int[] geo) throws IOException, ParameterException {
+		File file = new File(System.getProperty("emporda.options", "doc/OptionFiles"), optionFile);
+		FileInputStream in = new FileInputStream(file);
+		try {
+			return new Parameters(in, geo, true, false, false);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Generates a synthetic image.
+	 * 
+	 * @param geo is the image geometry
+	 * @param dynamicRange is the number of bits of the samples
+	 * @return the image, indexed by band, line and column
+	 */
+	public static int[][][] image(int[] geo, int dynamicRange) {
+		int bands = geo[CONS.BANDS];
+		int height = geo[CONS.HEIGHT];
+		int width = geo[CONS.WIDTH];
+		int max = (1 << dynamicRange) - 1;
+		Random random = new Random(SEED);
+
+		double[][] scene = new double[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				scene[y][x] = 0.5 + 0.25 * Math.sin(x / 7.0) * Math.cos(y / 11.0)
+						+ 0.1 * Math.sin((x + y) / 3.0);
+			}
+		}
+		int[][][] image = new int[bands][height][width];
+		for (int z = 0; z < bands; z++) {
+			double gain = 0.6 + 0.3 * Math.sin(z / 9.0);
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					double value = scene[y][x] * gain * max + random.nextGaussian() * (max >> 8);
+					image[z][y][x] = (int) Math.max(0, Math.min(max, Math.round(value)));
+				}
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Returns the mapped residuals of the image in BSQ order.
+	 * 
+	 * @param parameters all the information about the compression process
+	 * @param image is the image
+	 * @return the mapped residuals, indexed by band, line and column
+	 * @throws Exception if the predictor can not be created
+	 */
+	public static int[][][] residuals(Parameters parameters, int[][][] image) throws Exception {
+		Predictor predictor = PredictorFactory.getPredictor(parameters, false);
+		int[][][] residuals = new int[image.length][image[0].length][image[0][0].length];
+		predictBSQ(predictor, image, residuals);
+		return residuals;
+	}
+
+	/**
+	 * Runs the predictor over the whole image in BSQ order.
+	 * 
+	 * @param predictor is the predictor, it must be a new one
+	 * @param image is the image
+	 * @param residuals is where the mapped residuals are left
+	 */
+	public static void predictBSQ(Predictor predictor, int[][][] image, int[][][] residuals) {
+		int width = image[0][0].length;
+		for (int z = 0; z < image.length; z++) {
+			for (int y = 0; y < image[z].length; y++) {
+				for (int x = 0; x < width; x++) {
+					residuals[z][y][x] = y > 0 && x > 0 && x < width - 1
+							? predictor.compressInterior(image, z, y, x, z, y)
+							: predictor.compress(image, z, y, x, z, y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes an image to a temporary raw file, as unsigned 16 bit big endian samples.
+	 * 
+	 * @param image is the image
+	 * @param sampleOrder is the sample order of the file: 0 BSQ, 1 BIL, 2 BIP
+	 * @return the file, it is deleted when the JVM exits
+	 * @throws IOException if the file can not be written
+	 */
+	public static File writeRaw(int[][][] image, int sampleOrder) throws IOException {
+		int bands = image.length;
+		int height = image[0].length;
+		int width = image[0][0].length;
+		File file = File.createTempFile("emporda-bench", ".raw");
+		file.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			switch (sampleOrder) {
+			case 0:
+				for (int z = 0; z < bands; z++) 
+					for (int y = 0; y < height; y++) 
+						for (int x = 0; x < width; x++) 
+							out.writeShort(image[z][y][x]);
+				break;
+			case 1:
+				for (int y = 0; y < height; y++) 
+					for (int z = 0; z < bands; z++) 
+						for (int x = 0; x < width; x++) 
+							out.writeShort(image[z][y][x]);
+				break;
+			default:
+				for (int y = 0; y < height; y++) 
+					for (int x = 0; x < width; x++) 
+						for (int z = 0; z < bands; z++) 
+							out.writeShort(image[z][y][x]);
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Output stream that discards all the bytes.
+	 */
+	public static final class NullOutputStream extends OutputStream {
+		public void write(int b) {
+		}
+
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+	/**
+	 * The default constructor is overwritten because it is not necessary create an object of this class.
+	 */
+	private BenchData() {}
+}
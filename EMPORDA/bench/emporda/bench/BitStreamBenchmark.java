@@ -0,0 +1,112 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda.bench;
+
+import GiciStream.BitInputStream;
+import GiciStream.BitOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of BitOutputStream.write and BitInputStream.read with values of a
+ * fixed number of bits. The score is the time per value.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BitStreamBenchmark {
+
+	private static final int VALUES = 1 << 16;
+
+	@Param({"1", "7", "16", "29"})
+	public int bits;
+
+	private int[] values;
+	private byte[] encoded;
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(BenchData.SEED);
+		values = new int[VALUES];
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(out);
+		for (int i = 0; i < VALUES; i++) {
+			values[i] = random.nextInt() & (int) ((1L << bits) - 1);
+			bos.write(bits, values[i]);
+		}
+		bos.flush();
+		encoded = out.toByteArray();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public BitOutputStream write() throws IOException {
+		BitOutputStream bos = new BitOutputStream(new BenchData.NullOutputStream());
+		for (int i = 0; i < VALUES; i++) {
+			bos.write(bits, values[i]);
+		}
+		bos.flush();
+		return bos;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int read() throws IOException {
+		BitInputStream bis = new BitInputStream(new ByteArrayInputStream(encoded));
+		int check = 0;
+		for (int i = 0; i < VALUES; i++) {
+			check ^= bis.read(bits);
+		}
+		return check;
+	}
+}
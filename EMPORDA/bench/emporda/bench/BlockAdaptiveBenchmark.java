@@ -0,0 +1,122 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda.bench;
+
+import emporda.Parameters;
+
+import GiciEntropyCoder.BlockAdaptiveCoder.BlockAdaptiveCoder;
+import GiciStream.BitOutputStream;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of BlockAdaptiveCoder.codeBlock over the mapped residuals of a
+ * synthetic image, for the option files that use the block adaptive coder.
+ * Run with -prof gc, codeBlockSteadyState shows the allocation per block of a
+ * coder that is already running.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BlockAdaptiveBenchmark {
+
+	@Param({"options2.txt", "options4.txt"})
+	public String optionFile;
+
+	@Param({"32"})
+	public int bands;
+
+	@Param({"128"})
+	public int size;
+
+	private Parameters parameters;
+	private int[][] blocks;
+
+	private BlockAdaptiveCoder steadyCoder;
+	private int nextBlock = 0;
+
+	@Setup
+	public void setup() throws Exception {
+		int[] geo = BenchData.geometry(bands, size, size);
+		parameters = BenchData.parameters(optionFile, geo);
+		int[][][] residuals = BenchData.residuals(parameters, BenchData.image(geo, parameters.dynamicRange));
+		int blockSize = parameters.blockSize;
+		blocks = new int[bands * size * size / blockSize][blockSize];
+		int i = 0;
+		for (int z = 0; z < bands; z++) {
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++, i++) {
+					blocks[i / blockSize][i % blockSize] = residuals[z][y][x];
+				}
+			}
+		}
+		steadyCoder = new BlockAdaptiveCoder(new BitOutputStream(new BenchData.NullOutputStream()),
+				blockSize, parameters.dynamicRange, false, parameters.referenceSampleInterval, 64,
+				parameters.restrictIdBits);
+	}
+
+	@Benchmark
+	public BitOutputStream codeBlock() throws IOException {
+		BitOutputStream bos = new BitOutputStream(new BenchData.NullOutputStream());
+		BlockAdaptiveCoder coder = new BlockAdaptiveCoder(bos, parameters.blockSize, parameters.dynamicRange,
+				false, parameters.referenceSampleInterval, 64, parameters.restrictIdBits);
+		for (int i = 0; i < blocks.length; i++) {
+			coder.codeBlock(blocks[i]);
+		}
+		coder.finish();
+		return bos;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public void codeBlockSteadyState() throws IOException {
+		steadyCoder.codeBlock(blocks[nextBlock]);
+		nextBlock = nextBlock + 1 == blocks.length ? 0 : nextBlock + 1;
+	}
+}
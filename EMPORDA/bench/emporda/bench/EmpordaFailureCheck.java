@@ -0,0 +1,81 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda.bench;
+
+import emporda.Emporda;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Checks that the library entry points report invalid options to the caller
+ * with an exception, instead of exiting the JVM. It compresses a 16 bit image
+ * with a dynamic range of 8 bits, which the sample adaptive entropy coder
+ * can not code. It is
+ * run with:
+ * <p>
+ * java -cp dist/emporda-bench.jar emporda.bench.EmpordaFailureCheck
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class EmpordaFailureCheck {
+
+	private static volatile boolean finished = false;
+
+	/**
+	 * Runs the check and throws an Error if compress does not throw an
+	 * IOException. If the JVM is exited, the check is reported as failed.
+	 *
+	 * @param args are not used
+	 * @throws Exception if the check can not be run
+	 */
+	public static void main(String[] args) throws Exception {
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				if (!finished) {
+					System.out.println("EmpordaFailureCheck FAILED: the JVM was exited");
+				}
+			}
+		});
+		int[] geo = BenchData.geometry(4, 8, 8);
+		int[] image = new int[4 * 8 * 8];
+		Arrays.fill(image, 40000);
+		try {
+			Emporda.compress(image, geo, 0, "DYNAMIC_RANGE=8\nENTROPY_CODER_TYPE=0\n", null);
+		} catch (IOException e) {
+			finished = true;
+			System.out.println("EmpordaFailureCheck OK: " + e.getMessage());
+			return;
+		}
+		finished = true;
+		throw new Error("Compressing with a too small dynamic range did not fail");
+	}
+}
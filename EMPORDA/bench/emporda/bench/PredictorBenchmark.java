@@ -0,0 +1,160 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda.bench;
+
+import emporda.CONS;
+import emporda.Parameters;
+import emporda.Predictor;
+import emporda.PredictorFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of Predictor.compress and Predictor.decompress over a whole
+ * synthetic image in BSQ order. Every operation predicts the whole image
+ * with a new predictor. Run with -prof gc, compressSteadyState and
+ * decompressSteadyState show the allocation per line of a predictor that is
+ * already running, which must be zero.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PredictorBenchmark {
+
+	@Param({"options1.txt", "options2.txt", "options3.txt", "options4.txt"})
+	public String optionFile;
+
+	@Param({"32"})
+	public int bands;
+
+	@Param({"128"})
+	public int size;
+
+	private Parameters parameters;
+	private int[][][] image;
+	private int[][][] residuals;
+	private int[][][] output;
+
+	private Predictor steadyPredictor;
+	private int[][][] decoded;
+	private int nextLine = 1;
+
+	@Setup
+	public void setup() throws Exception {
+		int[] geo = BenchData.geometry(bands, size, size);
+		parameters = BenchData.parameters(optionFile, geo);
+		parameters.sampleEncodingOrder = CONS.BAND_SEQUENTIAL;
+		image = BenchData.image(geo, parameters.dynamicRange);
+		residuals = BenchData.residuals(parameters, image);
+		output = new int[bands][size][size];
+		// the predictor goes through the whole image, so the per band state
+		// of the last band is already allocated
+		steadyPredictor = PredictorFactory.getPredictor(parameters, false);
+		BenchData.predictBSQ(steadyPredictor, image, new int[bands][size][size]);
+		decoded = new int[bands][size][size];
+		for (int z = 0; z < bands; z++) {
+			for (int y = 0; y < size; y++) {
+				System.arraycopy(image[z][y], 0, decoded[z][y], 0, size);
+			}
+		}
+	}
+
+	@Benchmark
+	public int[][][] compress() throws Exception {
+		Predictor predictor = PredictorFactory.getPredictor(parameters, false);
+		BenchData.predictBSQ(predictor, image, output);
+		return output;
+	}
+
+	@Benchmark
+	public int[][][] decompress() throws Exception {
+		Predictor predictor = PredictorFactory.getPredictor(parameters, false);
+		for (int z = 0; z < bands; z++) {
+			for (int y = 0; y < size; y++) {
+				System.arraycopy(residuals[z][y], 0, output[z][y], 0, size);
+				for (int x = 0; x < size; x++) {
+					output[z][y][x] = y > 0 && x > 0 && x < size - 1
+							? predictor.decompressInterior(output, z, y, x, z, y)
+							: predictor.decompress(output, z, y, x, z, y);
+				}
+			}
+		}
+		return output;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int[] compressSteadyState() {
+		int z = bands - 1;
+		int y = nextLine;
+		int[] line = output[z][y];
+		for (int x = 0; x < size; x++) {
+			line[x] = x > 0 && x < size - 1
+					? steadyPredictor.compressInterior(image, z, y, x, z, y)
+					: steadyPredictor.compress(image, z, y, x, z, y);
+		}
+		nextLine = nextLine + 1 == size ? 1 : nextLine + 1;
+		return line;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int[] decompressSteadyState() {
+		int z = bands - 1;
+		int y = nextLine;
+		int[] line = decoded[z][y];
+		System.arraycopy(residuals[z][y], 0, line, 0, size);
+		for (int x = 0; x < size; x++) {
+			line[x] = x > 0 && x < size - 1
+					? steadyPredictor.decompressInterior(decoded, z, y, x, z, y)
+					: steadyPredictor.decompress(decoded, z, y, x, z, y);
+		}
+		nextLine = nextLine + 1 == size ? 1 : nextLine + 1;
+		return line;
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda.bench;
+
+import GiciFile.RawImage.OrderConverter;
+import GiciFile.RawImage.RawImage;
+import GiciFile.RawImage.RawImageIterator;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of RawImageIterator.next reading a synthetic image stored in each
+ * sample order, in BSQ order (as the coder does in BSQ encoding order) and in
+ * the order of the file, both from the file mapped in memory and through the
+ * chunk cache.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RawImageBenchmark {
+
+	/**
+	 * Order of the samples in the file, 0 BSQ, 1 BIL, 2 BIP
+	 */
+	@Param({"0", "1", "2"})
+	public int sampleOrder;
+
+	/**
+	 * Read path of the iterator, "mapped" or "cached"
+	 */
+	@Param({"mapped", "cached"})
+	public String path;
+
+	@Param({"32"})
+	public int bands;
+
+	@Param({"256"})
+	public int size;
+
+	private int[] geo;
+	private File file;
+	private int[] originalPixelOrder;
+	private int[] toBSQ;
+
+	@Setup
+	public void setup() throws Exception {
+		System.setProperty("emporda.mmap", Boolean.toString(path.equals("mapped")));
+		geo = BenchData.geometry(bands, size, size);
+		file = BenchData.writeRaw(BenchData.image(geo, 16), sampleOrder);
+		switch (sampleOrder) {
+		case 0:
+			originalPixelOrder = OrderConverter.DIM_TRANSP_IDENTITY;
+			toBSQ = OrderConverter.DIM_TRANSP_IDENTITY;
+			break;
+		case 1:
+			originalPixelOrder = OrderConverter.DIM_TRANSP_BSQ_TO_BIL;
+			toBSQ = OrderConverter.DIM_TRANSP_BIL_TO_BSQ;
+			break;
+		default:
+			originalPixelOrder = OrderConverter.DIM_TRANSP_BSQ_TO_BIP;
+			toBSQ = OrderConverter.DIM_TRANSP_BIP_TO_BSQ;
+		}
+	}
+
+	/**
+	 * Reads all the lines of the image.
+	 * 
+	 * @param transformation is the order in which the lines are read
+	 * @return a checksum of the samples
+	 * @throws Exception if the image can not be read
+	 */
+	@SuppressWarnings("unchecked")
+	private long read(int[] transformation) throws Exception {
+		RawImage image = new RawImage(file.getPath(), geo.clone(), originalPixelOrder, RawImage.READ);
+		RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], transformation, RawImage.READ, true);
+		long check = 0;
+		while (it.hasNext()) {
+			check += it.next()[0];
+		}
+		image.close(it);
+		return check;
+	}
+
+	/**
+	 * Reads all the lines of the image in BSQ order into a single line buffer.
+	 * 
+	 * @return a checksum of the samples
+	 * @throws Exception if the image can not be read
+	 */
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public long nextIntoBSQ() throws Exception {
+		RawImage image = new RawImage(file.getPath(), geo.clone(), originalPixelOrder, RawImage.READ);
+		RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], toBSQ, RawImage.READ, true);
+		int[] line = new int[size];
+		long check = 0;
+		while (it.hasNext()) {
+			it.nextInto(line);
+			check += line[0];
+		}
+		image.close(it);
+		return check;
+	}
+
+	@Benchmark
+	public long nextBSQ() throws Exception {
+		return read(toBSQ);
+	}
+
+	@Benchmark
+	public long nextFileOrder() throws Exception {
+		return read(OrderConverter.DIM_TRANSP_IDENTITY);
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda.bench;
+
+import emporda.Parameters;
+
+import GiciEntropyCoder.EntropyIntegerCoder.EntropyIntegerCoder;
+import GiciEntropyCoder.EntropyIntegerCoder.EntropyIntegerDecoder;
+import GiciStream.BitInputStream;
+import GiciStream.BitOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of EntropyIntegerCoder.codeSample and EntropyIntegerDecoder.decodeSample
+ * (with their statistics update) over the mapped residuals of a synthetic image,
+ * for the option files that use the sample adaptive coder.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SampleAdaptiveBenchmark {
+
+	@Param({"options1.txt", "options3.txt"})
+	public String optionFile;
+
+	@Param({"32"})
+	public int bands;
+
+	@Param({"128"})
+	public int size;
+
+	private Parameters parameters;
+	private int[][][] residuals;
+	private byte[] encoded;
+
+	@Setup
+	public void setup() throws Exception {
+		int[] geo = BenchData.geometry(bands, size, size);
+		parameters = BenchData.parameters(optionFile, geo);
+		residuals = BenchData.residuals(parameters, BenchData.image(geo, parameters.dynamicRange));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(out);
+		code(bos);
+		encoded = out.toByteArray();
+	}
+
+	/**
+	 * Codes all the residuals in BSQ order.
+	 * 
+	 * @param bos is the stream where the residuals are coded
+	 * @throws Exception if the residuals can not be written
+	 */
+	private void code(BitOutputStream bos) throws Exception {
+		EntropyIntegerCoder ec = new EntropyIntegerCoder(bos, parameters.initialCountExponent,
+				parameters.accInitConstant, parameters.rescalingCounterSize, parameters.dynamicRange,
+				parameters.unaryLengthLimit, parameters.getAccInitTable(), bands, 0, 0, null);
+		for (int z = 0; z < bands; z++) {
+			ec.init(z);
+			int t = 0;
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++, t++) {
+					ec.codeSample(residuals[z][y][x], t, z);
+					ec.update(residuals[z][y][x], t, z);
+				}
+			}
+		}
+		ec.terminate();
+	}
+
+	@Benchmark
+	public BitOutputStream codeSample() throws Exception {
+		BitOutputStream bos = new BitOutputStream(new BenchData.NullOutputStream());
+		code(bos);
+		return bos;
+	}
+
+	@Benchmark
+	public int decodeSample() throws Exception {
+		BitInputStream bis = new BitInputStream(new ByteArrayInputStream(encoded));
+		EntropyIntegerDecoder ed = new EntropyIntegerDecoder(bis, parameters.initialCountExponent,
+				parameters.accInitConstant, parameters.rescalingCounterSize, parameters.dynamicRange,
+				parameters.unaryLengthLimit, parameters.getAccInitTable(), bands);
+		int check = 0;
+		for (int z = 0; z < bands; z++) {
+			ed.init(z);
+			for (int t = 0; t < size * size; t++) {
+				int sample = ed.decodeSample(t, z);
+				ed.update(sample, t, z);
+				check += sample;
+			}
+		}
+		return check;
+	}
+}
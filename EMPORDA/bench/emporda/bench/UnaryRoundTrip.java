@@ -0,0 +1,185 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda.bench;
+
+import GiciEntropyCoder.UnaryCoder.UnaryCoder;
+import GiciEntropyCoder.UnaryCoder.UnaryDecoder;
+import GiciStream.BitInputStream;
+import GiciStream.BitOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Round trip check of the unary codewords. The runs of zeros written by
+ * UnaryCoder, which writes them 64 bits at a time, are compared with the
+ * ones written bit by bit, and they are read back with UnaryDecoder and with
+ * BitInputStream.readUnary. The runs start at every bit offset of a 64 bit
+ * word and include the lengths around the word size and very long runs.
+ * It is run with:
+ * <p>
+ * java -cp dist/emporda-bench.jar emporda.bench.UnaryRoundTrip
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class UnaryRoundTrip {
+
+	/**
+	 * Runs checked at every bit offset
+	 */
+	private static final int[] RUNS = {0, 63, 64, 65, 1, 31, 32, 33, 127, 128, 129, 4095, 65536, (1 << 20) + 3};
+
+	/**
+	 * Runs longer than any buffer of the streams, checked at some unaligned bit offsets
+	 */
+	private static final int[] LONG_RUNS = {100000007, 0, 65, 64 * 1000000};
+	private static final int[] LONG_RUN_OFFSETS = {1, 7, 33, 63};
+
+	private static final int WORD_BITS = 64;
+
+	/**
+	 * Checks all the runs and throws an Error at the first one that does not
+	 * round trip.
+	 *
+	 * @param args are not used
+	 * @throws IOException if the streams fail
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] reversed = new int[RUNS.length];
+		for (int i = 0; i < RUNS.length; i++) {
+			reversed[i] = RUNS[RUNS.length - 1 - i];
+		}
+		int checked = 0;
+		for (int offset = 0; offset < WORD_BITS; offset++) {
+			checked += check(offset, RUNS);
+			checked += check(offset, reversed);
+		}
+		for (int offset: LONG_RUN_OFFSETS) {
+			checked += check(offset, LONG_RUNS);
+		}
+		System.out.println("Unary round trip OK: " + checked + " runs");
+	}
+
+	/**
+	 * Codes a prefix of offset bits followed by the runs, and checks it.
+	 *
+	 * @param offset is the number of bits written before the first run
+	 * @param runs are the runs of zeros
+	 * @return the number of runs checked
+	 * @throws IOException if the streams fail
+	 */
+	private static int check(int offset, int[] runs) throws IOException {
+		boolean[] prefix = new boolean[offset];
+		Random random = new Random(BenchData.SEED + offset);
+		for (int i = 0; i < offset; i++) {
+			prefix[i] = random.nextBoolean();
+		}
+
+		ByteArrayOutputStream coded = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(coded);
+		writePrefix(bos, prefix);
+		UnaryCoder coder = new UnaryCoder(bos);
+		for (int run: runs) {
+			coder.codeSample(run);
+		}
+		coder.finish();
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		bos = new BitOutputStream(expected);
+		writePrefix(bos, prefix);
+		for (int run: runs) {
+			for (int i = 0; i < run; i++) {
+				bos.write(1, 0);
+			}
+			bos.write(1, 1);
+		}
+		bos.flush();
+
+		String context = "offset " + offset + ", runs " + Arrays.toString(runs);
+		if (!Arrays.equals(coded.toByteArray(), expected.toByteArray())) {
+			throw new Error("UnaryCoder output differs from the bit by bit codewords, " + context);
+		}
+
+		BitInputStream bis = new BitInputStream(new ByteArrayInputStream(coded.toByteArray()));
+		readPrefix(bis, prefix, context);
+		UnaryDecoder decoder = new UnaryDecoder(bis);
+		for (int run: runs) {
+			int decoded = decoder.decodeSample();
+			if (decoded != run) {
+				throw new Error("UnaryDecoder read " + decoded + " instead of " + run + ", " + context);
+			}
+		}
+
+		// a run read in two parts, the first one stopped by the limit
+		bis = new BitInputStream(new ByteArrayInputStream(coded.toByteArray()));
+		readPrefix(bis, prefix, context);
+		for (int run: runs) {
+			int first = bis.readUnary(run / 2);
+			int second = bis.readUnary(Integer.MAX_VALUE);
+			if (first != run / 2 || first + second != run) {
+				throw new Error("readUnary read " + first + " and " + second + " instead of " + run + ", " + context);
+			}
+		}
+		return runs.length;
+	}
+
+	/**
+	 * Writes the prefix bit by bit.
+	 *
+	 * @param bos is the stream
+	 * @param prefix are the bits
+	 * @throws IOException if the stream fails
+	 */
+	private static void writePrefix(BitOutputStream bos, boolean[] prefix) throws IOException {
+		for (boolean bit: prefix) {
+			bos.write(1, bit ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Reads the prefix bit by bit and checks it.
+	 *
+	 * @param bis is the stream
+	 * @param prefix are the expected bits
+	 * @param context describes the check for the error message
+	 * @throws IOException if the stream fails
+	 */
+	private static void readPrefix(BitInputStream bis, boolean[] prefix, String context) throws IOException {
+		for (boolean bit: prefix) {
+			if (bis.read(1) != (bit ? 1 : 0)) {
+				throw new Error("Wrong prefix bit, " + context);
+			}
+		}
+	}
+}
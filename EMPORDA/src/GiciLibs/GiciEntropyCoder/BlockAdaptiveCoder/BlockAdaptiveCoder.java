@@ -127,7 +127,7 @@ public class BlockAdaptiveCoder extends RiceCoder implements BlockCoder {
 	 * This class implements the second extension coding logic.
 	 */
 	private class SecondExtension {
-		long[] secExtBlock;
+		long[] secExtBlock = new long[0];
 
 		/**
 		 * Uses the unaryCoder to write the converted block to output.
@@ -142,13 +142,16 @@ public class BlockAdaptiveCoder extends RiceCoder implements BlockCoder {
 		}
 
 		/**
-		 * Converts a passed block into second extension representation and stores it in the field secExtBlock.
+		 * Converts a passed block into second extension representation and stores it in the field secExtBlock,
+		 * that is only allocated again when the length of the blocks changes.
 		 *
 		 * @param block the block to be converted.
 		 */
 		public void convertToSecExt(int[] block) {
 			int len = (block.length + 1) / 2;
-			secExtBlock = new long[len];
+			if (secExtBlock.length != len) {
+				secExtBlock = new long[len];
+			}
 
 			boolean odd = (block.length % 2) == 1;
 
@@ -317,39 +320,38 @@ public class BlockAdaptiveCoder extends RiceCoder implements BlockCoder {
 			return;
 		}
 
-		// examine second extension option
-		secExt.convertToSecExt(block);
-		long[] secExtBlock = secExt.getBlock();
-
-		long secSum = 0;
-		for (long value : secExtBlock) {
-			if (value < 0 || value > bestSize) {
-				secSum = bestSize;
-				break;
-			}
-			secSum += value;
-		}
-
-		size = secSum + secExtBlock.length + idBits + 1;
-		if (size < bestSize) {
-			codingType = SECOND_EXT;
-			bestSize = size;
-		}
-
 		// examine sample split options
-		for (int i = 0; i < numOptions - 2; i++) {
-			sum = 0 ;
-			for( int sample : block) {
-				sum += (sample & 0xffffffffL) >>> i ;
+		int k = findBestSplit(block, sum, numOptions - 2);
+		long splitSize = k < 0 ? Long.MAX_VALUE : bestSplitSize + idBits;
+
+		// examine second extension option, which is preferred to a sample split option of
+		// the same size. Each codeword is not smaller than the sum of its two samples, so
+		// it is skipped when this bound shows that it can not be chosen.
+		long secBound = sum + (block.length + 1) / 2 + idBits + 1;
+		if (secBound < bestSize && secBound <= splitSize) {
+			secExt.convertToSecExt(block);
+			long[] secExtBlock = secExt.getBlock();
+
+			long secSum = 0;
+			for (long value : secExtBlock) {
+				if (value < 0 || value > bestSize) {
+					secSum = bestSize;
+					break;
+				}
+				secSum += value;
 			}
-			size = sum + (i + 1) * block.length + idBits;
+
+			size = secSum + secExtBlock.length + idBits + 1;
 			if (size < bestSize) {
-				codingType = SAMPLE_SPLIT;
-				codingOption = i;
+				codingType = SECOND_EXT;
 				bestSize = size;
 			}
 		}
 
+		if (splitSize < bestSize) {
+			codingType = SAMPLE_SPLIT;
+			codingOption = k;
+		}
 	}
 
 
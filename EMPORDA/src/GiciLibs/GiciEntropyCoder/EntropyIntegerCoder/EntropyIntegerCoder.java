@@ -111,6 +111,7 @@ public class EntropyIntegerCoder implements EntropyCoder {
 	 * @param numBitsWritten the number of bits written to the file at this moment.
 	 * @param bitCost is the bit cost mode
 	 * @param outputFile file to save bit cost (it can be null if bitCost is 0)
+	 * @throws IOException if the bit cost file can not be created
 	 */
 	public EntropyIntegerCoder(
 		BitOutputStream bos,
@@ -123,7 +124,7 @@ public class EntropyIntegerCoder implements EntropyCoder {
 		int bands, 
 		long numBitsWritten, 
 		int bitCost,
-		String outputFile)
+		String outputFile) throws IOException
 	{
 		this.bos = bos;
 
@@ -138,15 +139,10 @@ public class EntropyIntegerCoder implements EntropyCoder {
 		this.numBitsWritten = numBitsWritten;
 		
 		this.bitCost = bitCost;
-		try {
-			if(bitCost > 0) {
-				File f = new File(outputFile + ".bitCost");
-				FileOutputStream fs = new FileOutputStream(f);
-				bitCostDos = new DataOutputStream( new BufferedOutputStream(fs));
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.exit(-1);
+		if(bitCost > 0) {
+			File f = new File(outputFile + ".bitCost");
+			FileOutputStream fs = new FileOutputStream(f);
+			bitCostDos = new DataOutputStream( new BufferedOutputStream(fs));
 		}
 		
 		accumulator = new int[bands];
@@ -216,27 +212,22 @@ public class EntropyIntegerCoder implements EntropyCoder {
 		int bitsCoded = 0;
 		if (t == 0) {
 			if(sample > 1 << dynamicRange) {
-				try {
-					throw new ParameterException("PARAMS ERROR: dynamic range too small for this image: " + sample);
-				} catch (ParameterException e) {
-					e.printStackTrace();
-					System.exit(-1);
-				}
+				ParameterException e = new ParameterException("PARAMS ERROR: dynamic range too small for this image: " + sample);
+				throw new IOException(e.getMessage(), e);
 			}
 			bos.write(dynamicRange, sample);
 			bitsCoded = dynamicRange;
 		} else {
 
-			k_z = IntegerMath.log2((accumulator[z] + (49*counter[z] >> 7))/ counter[z]);
-			k_z = (k_z < 0) ? 0 : k_z;
+			k_z = IntegerMath.log2Quotient(accumulator[z] + (49*counter[z] >> 7), counter[z]);
 			k_z = (k_z > dynamicRange-2) ? dynamicRange-2 : k_z;
 			u_z = sample >> k_z;
 			u_z = (u_z < 0) ? 0: u_z;
 			if (u_z < unaryLengthLimit) {
-				bos.write(u_z, 0);
-				bos.write(1, 1);
-				bos.write(k_z, sample);
-				bitsCoded = k_z + 1 + u_z; 
+				// the u_z zeros, the ending one and the k_z least significant bits
+				// are written at once
+				bitsCoded = k_z + 1 + u_z;
+				bos.writeLong(bitsCoded, (1L << k_z) | (sample & ((1L << k_z) - 1)));
 			} else {
 				bos.write(unaryLengthLimit, 0);
 				bos.write(dynamicRange, sample);
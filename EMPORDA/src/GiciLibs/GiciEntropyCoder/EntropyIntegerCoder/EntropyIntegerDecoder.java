@@ -179,29 +179,30 @@ public class EntropyIntegerDecoder implements EntropyDecoder {
 			return decodedSample;
 		}
 
-		int buffer = -1, u_z = 0;
-		int k_z = IntegerMath.log2((accumulator[z] + (49*counter[z] >> 7)) / counter[z]);
-		 
-
-		k_z = (k_z < 0) ? 0 : k_z;
+		int k_z = IntegerMath.log2Quotient(accumulator[z] + (49*counter[z] >> 7), counter[z]);
 		k_z = (k_z > dynamicRange - 2) ? dynamicRange - 2 : k_z;
-		
-		for (; u_z < unaryLengthLimit && buffer != 1; u_z ++) {
-			buffer = bis.read(1);
+
+		// the whole codeword is decoded from the next 32 bits when it fits in them
+		int bits = bis.peek(32);
+		int u_z = Integer.numberOfLeadingZeros(bits);
+		int length = u_z + 1 + k_z;
+		if (u_z < unaryLengthLimit && length <= 32) {
+			bis.skip(length);
+			decodedSample = (u_z << k_z) + (bits >>> (32 - length) & ((1 << k_z) - 1));
+			numBitsRead += length;
+			return decodedSample;
 		}
-		numBitsRead += u_z;
-		if (buffer == 1 && u_z > 0) {
-			u_z--;
-		} 
+
+		u_z = bis.readUnary(unaryLengthLimit);
 		
 		if (u_z < unaryLengthLimit) {
 			int leastSignificantBits = bis.read(k_z);
 			decodedSample = (u_z << k_z) + leastSignificantBits;
-			numBitsRead += k_z;
+			numBitsRead += u_z + 1 + k_z;
 			
 		} else {
 			decodedSample = bis.read(dynamicRange);
-			numBitsRead += dynamicRange;
+			numBitsRead += u_z + dynamicRange;
 		}
 		return decodedSample;
 	}
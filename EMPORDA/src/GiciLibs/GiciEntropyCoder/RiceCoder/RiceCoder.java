@@ -8,6 +8,7 @@ import GiciStream.BitOutputStream;
 import GiciMath.IntegerMath;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 
 /**
@@ -37,6 +38,16 @@ public class RiceCoder implements EntropyCoder {
 	protected int codingOption;
 	protected int[] block = null;
 	protected int blockCounter = 0;
+
+	/**
+	 * Scratch block where the masked samples of each coded block are stored.
+	 */
+	private int[] maskedBlock;
+
+	/**
+	 * Size of the block coded with the split found by <code>findBestSplit</code>.
+	 */
+	protected long bestSplitSize;
 	
 	/**
 	 * Constructor.
@@ -69,10 +80,7 @@ public class RiceCoder implements EntropyCoder {
 		this.numOptions = 1 << idBits;
 		this.backupOption = numOptions - 1;
 		block = new int[blockSize];
-		for(int i = 0; i < blockSize; i ++) {
-			block[i] = 0;
-		}
-		
+		maskedBlock = new int[blockSize];
 	}
 
 	/**
@@ -90,9 +98,6 @@ public class RiceCoder implements EntropyCoder {
 		if(blockCounter == blockSize) {
 			blockCounter = 0;
 			codeBlock(block);
-			for(int i = 0; i < blockSize; i ++) {
-				block[i] = 0;
-			}
 		}
 	}
 
@@ -124,6 +129,8 @@ public class RiceCoder implements EntropyCoder {
 
 	public void terminate() throws IOException {
 		if (blockCounter > 0) {
+			// the last block is completed with zeros
+			Arrays.fill(block, blockCounter, blockSize, 0);
 			codeBlock(block);
 			blockCounter = 0;
 		}
@@ -142,6 +149,7 @@ public class RiceCoder implements EntropyCoder {
 
 	/**
 	 * All bits outside of the <code>dynamicRange</code> are set to zero.
+	 * The result is stored in a scratch block, that is reused by the next call.
 	 *
 	 * @param inBlock the block to be masked (remains unmodified).
 	 *
@@ -149,7 +157,10 @@ public class RiceCoder implements EntropyCoder {
 	 */
 	protected int[] maskBlockBits(int[] inBlock) {
 
-		int[] outBlock = new int[inBlock.length];
+		if (maskedBlock.length != inBlock.length) {
+			maskedBlock = new int[inBlock.length];
+		}
+		int[] outBlock = maskedBlock;
 
 		for (int i = 0; i < inBlock.length; i++) {
 			outBlock[i] = inBlock[i] & bitMask;
@@ -172,18 +183,79 @@ public class RiceCoder implements EntropyCoder {
 		long bestSize = block.length * dynamicRange;
 
 		// examine sample split options
-		for (int i = 0; i < numOptions - 1; i++) {
-			long sum = 0 ;
-			for( int sample : block) {
-				sum += (sample & 0xffffffffL) >>> i ;
-			}
+		int k = findBestSplit(block, sumBlock(block), numOptions - 1);
+		if (bestSplitSize < bestSize) {
+			codingOption = k;
+		}
+	}
 
-			long size = sum + (i + 1) * block.length ;
-			if (size < bestSize) {
-				codingOption = i;
-				bestSize = size;
+
+	/**
+	 * Finds the split position that produces the smallest output for a given block,
+	 * choosing the lowest one in case of a tie. The size of the block coded with it
+	 * is assigned to <code>bestSplitSize</code>.
+	 *
+	 * The size is a convex function of the split position, so the search starts from an
+	 * estimate based on the mean of the block and only evaluates the sizes of its
+	 * neighbours until the minimum is found, instead of evaluating every split position.
+	 *
+	 * @param block contains the data on which the decision is based.
+	 * @param sum is the sum of the block, treating the values as unsigned ints.
+	 * @param options is the number of split positions that can be chosen, from 0.
+	 *
+	 * @return the split position, or -1 if there are no options.
+	 */
+	protected int findBestSplit(int[] block, long sum, int options) {
+
+		if (options <= 0) {
+			bestSplitSize = Long.MAX_VALUE;
+			return -1;
+		}
+
+		// base 2 logarithm of the mean
+		int k = 63 - Long.numberOfLeadingZeros(sum) - (31 - Integer.numberOfLeadingZeros(block.length));
+		k = Math.max(0, Math.min(k, options - 1));
+
+		long size = splitSize(block, k);
+		long next = k + 1 < options ? splitSize(block, k + 1) : Long.MAX_VALUE;
+
+		if (next < size) {
+			do {
+				k++;
+				size = next;
+				next = k + 1 < options ? splitSize(block, k + 1) : Long.MAX_VALUE;
+			} while (next < size);
+		} else {
+			while (k > 0) {
+				long previous = splitSize(block, k - 1);
+				if (previous > size) {
+					break;
+				}
+				k--;
+				size = previous;
 			}
 		}
+
+		bestSplitSize = size;
+		return k;
+	}
+
+
+	/**
+	 * Computes the size of a block coded with the sample split option, without the id.
+	 *
+	 * @param block is the block to be coded.
+	 * @param k is the position at which the samples are split.
+	 *
+	 * @return the size in bits.
+	 */
+	protected long splitSize(int[] block, int k) {
+
+		long sum = 0;
+		for (int sample : block) {
+			sum += (sample & 0xffffffffL) >>> k;
+		}
+		return sum + (k + 1) * block.length;
 	}
 
 
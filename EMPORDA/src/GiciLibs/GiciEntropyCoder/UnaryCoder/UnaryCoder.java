@@ -19,6 +19,8 @@ import java.io.IOException;
  */
 public class UnaryCoder implements SampleCoder {
 
+	private static final int ZERO_RUN_BITS = 64;
+
 	private final BitOutputStream bos;
 
 
@@ -63,10 +65,11 @@ public class UnaryCoder implements SampleCoder {
 
 		long value = sample & 0xffffffffL;
 		
-		for (long i = 0; i < value; i++) {
-			bos.write(1, 0);
+		// long runs of zeros are written 64 bits at a time
+		for (; value >= ZERO_RUN_BITS; value -= ZERO_RUN_BITS) {
+			bos.writeLong(ZERO_RUN_BITS, 0);
 		}
-		bos.write(1, 1);
+		bos.writeLong((int) value + 1, 1);
 	}
 
 
@@ -60,12 +60,7 @@ public class UnaryDecoder implements SampleDecoder {
 	 */
 	public int decodeSample() throws IOException {
 
-		long value = 0;
-
-		while (bis.read(1) == 0) {
-			value++;
-		}
-		return (int) value;
+		return bis.readUnary(Integer.MAX_VALUE);
 	}
 
 }
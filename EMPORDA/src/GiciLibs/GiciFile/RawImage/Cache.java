@@ -29,21 +29,67 @@ package GiciFile.RawImage;
 import java.util.*;
 
 /**
- * Represents a cache with blocks of data and LRU policy.
+ * Represents a cache with blocks of data and LRU policy. Blocks are found through an open
+ * addressed table of int keys and kept in a pool of preallocated nodes linked in LRU order,
+ * so get and set operations do not allocate memory.
  */
 public class Cache<T> {
 
 	/**
-	 * This representations allows quick get and set operations.
+	 * Marks an empty entry of the table.
 	 */
-	private Map<Integer,Block> pages;
-	
+	private static final int EMPTY = -1;
+
+	/**
+	 * Positions of the blocks in the table, or EMPTY. Collisions are solved with linear probing.
+	 */
+	private final int[] keys;
+
+	/**
+	 * Node of the block with the position at the same entry of keys.
+	 */
+	private final int[] values;
+
+	/**
+	 * keys.length - 1, the length of the table is a power of two.
+	 */
+	private final int mask;
+
+	/**
+	 * 32 - log2(keys.length), used to take the highest bits of the hash.
+	 */
+	private final int shift;
+
+	/**
+	 * The blocks stored in each node.
+	 */
+	private final Block[] blocks;
+
+	/**
+	 * Previous node (more recently used) of each node.
+	 */
+	private final int[] prev;
+
+	/**
+	 * Next node (less recently used) of each node.
+	 */
+	private final int[] next;
+
+	/**
+	 * Most recently used node.
+	 */
+	private int head;
+
 	/**
-	 * The elements are saved in order according the last time that were used.
-	 * This list allows apply policy quickly.
+	 * Least recently used node.
 	 */
-	private DoubleLinkedList<Integer> policy;
-	
+	private int tail;
+
+	/**
+	 * The number of nodes used.
+	 */
+	private int size;
+
 	/**
 	 * The max number of elements.
 	 */
@@ -53,11 +99,113 @@ public class Cache<T> {
 	 * Construct a cache wit numElements elements.
 	 * @param numElements is max number of elements that cache can contain.
 	 */
+	@SuppressWarnings("unchecked")
 	public Cache(int numElements) {
 		this.numElements = numElements;
 
-		pages = new HashMap<Integer, Block>();
-		policy = new DoubleLinkedList<Integer>();
+		int tableSize = Integer.highestOneBit(Math.max(numElements, 1) * 2 - 1) << 1;
+		keys = new int[tableSize];
+		values = new int[tableSize];
+		Arrays.fill(keys, EMPTY);
+		mask = tableSize - 1;
+		shift = Integer.numberOfLeadingZeros(tableSize) + 1;
+
+		blocks = (Block[]) new Cache<?>.Block[numElements];
+		prev = new int[numElements];
+		next = new int[numElements];
+		head = EMPTY;
+		tail = EMPTY;
+		size = 0;
+	}
+
+	/**
+	 * Return the entry of the table where the search of a position starts.
+	 * @param position of a block.
+	 * @return the first entry of the table for this position.
+	 */
+	private int hash(int position) {
+		return (position * 0x9E3779B9) >>> shift;
+	}
+
+	/**
+	 * Return the node of the block that contains this position.
+	 * @param position of the block.
+	 * @return the node of the block or EMPTY if the block is not in cache.
+	 */
+	private int find(int position) {
+		for(int i = hash(position); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if(keys[i] == position) {
+				return values[i];
+			}
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Remove a position from the table, shifting back the entries that follow it.
+	 * @param position of a block that is in the table.
+	 */
+	private void removeKey(int position) {
+		int i = hash(position);
+		while(keys[i] != position) {
+			i = (i + 1) & mask;
+		}
+		for(int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+			int k = hash(keys[j]);
+			//the entry j can be moved to i if its first entry is not in (i, j]
+			if(((j - k) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+	}
+
+	/**
+	 * Add a position to the table.
+	 * @param position of a block that is not in the table.
+	 * @param node of the block.
+	 */
+	private void addKey(int position, int node) {
+		int i = hash(position);
+		while(keys[i] != EMPTY) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = position;
+		values[i] = node;
+	}
+
+	/**
+	 * Unlink a node of the LRU list.
+	 * @param node is a node of the list.
+	 */
+	private void unlink(int node) {
+		if(prev[node] != EMPTY) {
+			next[prev[node]] = next[node];
+		} else {
+			head = next[node];
+		}
+		if(next[node] != EMPTY) {
+			prev[next[node]] = prev[node];
+		} else {
+			tail = prev[node];
+		}
+	}
+
+	/**
+	 * Link a node at the front of the LRU list.
+	 * @param node is a node that is not in the list.
+	 */
+	private void linkFirst(int node) {
+		prev[node] = EMPTY;
+		next[node] = head;
+		if(head != EMPTY) {
+			prev[head] = node;
+		} else {
+			tail = node;
+		}
+		head = node;
 	}
 
 	/**
@@ -66,14 +214,15 @@ public class Cache<T> {
 	 * @return block that contains this position.
 	 */
 	public Block get(int position) {
-		Block page = pages.get(position);
-		if(page != null) {
-			LinkedElement<Integer> element = page.element;
-			policy.remove(element);
-			page.element = policy.add(element.key);
-			return page;
+		int node = find(position);
+		if(node == EMPTY) {
+			return null;
+		}
+		if(node != head) {
+			unlink(node);
+			linkFirst(node);
 		}
-		return null;
+		return blocks[node];
 	}
 
 	/**
@@ -88,13 +237,22 @@ public class Cache<T> {
 			block.dirty = true;
 			return null;
 		}
-		pages.put(newPage.position, newPage);
-		newPage.element = policy.add(newPage.position);
+		if(numElements == 0) {
+			return newPage;
+		}
 		Block deletedPage = null;
-		if(policy.size() > numElements) {
-			int key = policy.poll().key;
-			deletedPage = pages.remove(key);
+		int node;
+		if(size < numElements) {
+			node = size++;
+		} else {
+			node = tail;
+			deletedPage = blocks[node];
+			removeKey(deletedPage.position);
+			unlink(node);
 		}
+		blocks[node] = newPage;
+		addKey(newPage.position, node);
+		linkFirst(node);
 		return deletedPage;
 	}
 
@@ -104,11 +262,11 @@ public class Cache<T> {
 	 * @throws NoSuchElementException if any block contains this position.
 	 */
 	public void markDirty(int position) throws NoSuchElementException {
-		Block page = pages.get(position);
-		if(page == null) {
+		int node = find(position);
+		if(node == EMPTY) {
 			throw new NoSuchElementException("Can't mark as dirty element "+position+" because it's not cached");
 		}
-		page.dirty = true;
+		blocks[node].dirty = true;
 	}
 
 	/**
@@ -117,9 +275,8 @@ public class Cache<T> {
 	 */
 	public ArrayList<Block> flush() {
 		ArrayList<Block> dirtyPages = new ArrayList<Block>();
-		Iterator<Integer> iterator = policy.iterator();
-		while(iterator.hasNext()) {
-			Block page = pages.get(iterator.next());
+		for(int node = tail; node != EMPTY; node = prev[node]) {
+			Block page = blocks[node];
 			if(page.dirty) {
 				dirtyPages.add(page);
 				page.dirty = false;
@@ -132,11 +289,6 @@ public class Cache<T> {
 	 * Is a cache block.
 	 */
 	public class Block {
-		/**
-		 * An element that represents the position of the block in
-		 * double linked list.
-		 */
-		protected LinkedElement<Integer> element;
 		
 		/**
 		 * The data of this block.
@@ -160,193 +312,9 @@ public class Cache<T> {
 		 * @param dirty says if the data of this block has been modified.
 		 */
 		public Block(T data, int position, boolean dirty) {
-			element = null;
 			this.data = data;
 			this.position = position;
 			this.dirty = dirty;
 		}
 	}
 }
-
-/**
- * An implementation of double linked list.
- */
-class DoubleLinkedList<T> {
-
-	/**
-	 * Represents a iterator over linked list.
-	 */
-	class DoubleLinkedListIterator implements Iterator<T> {
-		/**
-		 * The next element to be returned.
-		 */
-		LinkedElement<T> element;
-
-		/**
-		 * Construct a iterator starting at element 'element'
-		 * @param element is an element of linked list.
-		 */
-		DoubleLinkedListIterator(LinkedElement<T> element) {
-			this.element = element;
-		}
-
-		/**
-		 * Return true if there are more elements.
-		 * @return true if there are more elements.
-		 */
-		public boolean hasNext() {
-			return element != null;
-		}
-
-		/**
-		 * Return the next element of this list.
-		 * @throws NoSuchElementException if there are no more elements.
-		 */
-		public T next() throws NoSuchElementException {
-			if(element == null) {
-				throw new NoSuchElementException();
-			}
-			T key = element.key;
-			element = element.next;
-			return key;
-		}
-
-		/**
-		 * Remove operation is not supported.
-		 * @throws UnsupportedOperationException if is called.
-		 */
-		public void remove() throws UnsupportedOperationException {
-			throw new UnsupportedOperationException("remove operation is not implemented");
-		}
-	}
-			
-	/**
-	 * First element of this list.
-	 */
-	private LinkedElement<T> head;
-	
-	/**
-	 * Last element of this list.
-	 */
-	private LinkedElement<T> tail;
-	
-	/**
-	 * Number of elements of the list.
-	 */
-	private int size;
-
-	/**
-	 * Construct a double linked list.
-	 */
-	public DoubleLinkedList() {
-		head = null;
-		tail = null;
-		size = 0;
-	}
-
-	/**
-	 * Add at the end an element with data key.
-	 * @param key is the data of the element to add.
-	 * @return an element added to this list.
-	 */
-	public LinkedElement<T> add(T key) {
-		LinkedElement<T> le = new LinkedElement<T>(key);
-
-		if(head == null) {
-			head = le;
-		}else {
-			tail.next = le;
-		}
-		le.prev = tail;
-		le.next = null;
-		tail = le;
-
-		size++;
-		return le;
-	}
-
-	/**
-	 * Remove and return the first element of the list.
-	 * @return the first element of the list.
-	 * @throws NoSuchElementException if the list is empty.
-	 */
-	public LinkedElement<T> poll() throws NoSuchElementException {
-		if(head == null) {
-			throw new NoSuchElementException("Can't do poll operation in empty list");
-		}
-		
-		LinkedElement<T> t = head;
-		head = t.next;
-		if(head == null) {
-			tail = null;
-		} else {
-			head.prev = null;
-		}
-		size--;
-		return t;
-	}
-
-	/**
-	 * Remove the element e of this list.
-	 * @param e is the element to remove. Must be not null.
-	 */
-	public void remove(LinkedElement<T> e) {
-		if (e.prev != null) {
-			e.prev.next = e.next;
-		} else {
-			head = e.next;
-		}
-
-		if (e.next != null) {
-			e.next.prev = e.prev;
-		} else {
-			tail = e.prev;
-		}
-		size--;
-	}
-
-	/**
-	 * Return the number of the elements of this list.
-	 * @return the number of elements.
-	 */
-	public int size() {
-		return size;
-	}
-
-	/**
-	 * Return a iterator over this list.
-	 * @return iterator over this list.
-	 */
-	public Iterator<T> iterator() {
-		return new DoubleLinkedListIterator(head);
-	}
-}
-
-/**
- * Represents an element of double linked list.
- */
-class LinkedElement<T> {
-
-	/**
-	 * Constructs an element of double linked list.
-	 * @param key is the data of this element.
-	 */
-	public LinkedElement(T key) {
-		this.key=key;
-	}
-
-	/**
-	 * Next element in the list.
-	 */
-	LinkedElement<T> next;
-	
-	/**
-	 * Previous element in the list.
-	 */
-	LinkedElement<T> prev;
-	
-	/**
-	 * Data of the element.
-	 */
-	T key;
-}
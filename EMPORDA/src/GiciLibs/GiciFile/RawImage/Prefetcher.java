@@ -0,0 +1,178 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2012  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile.RawImage;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads consecutive blocks of a file in a background thread, ahead of the thread that consumes them.
+ * The thread uses its own channel of the file, so stopping it does not affect other readers of the file.
+ * Blocks are taken from a pool of depth buffers, filled with positional reads and given to the consumer
+ * through a queue in file order. The consumer returns each block to the pool once it has been used,
+ * so the reader never has more than depth blocks read ahead.
+ */
+class Prefetcher {
+
+	/**
+	 * Marks the end of the blocks in the queue.
+	 */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	/**
+	 * Buffers that can be filled by the reader thread.
+	 */
+	private final ArrayBlockingQueue<ByteBuffer> free;
+
+	/**
+	 * Blocks read and not yet taken by the consumer.
+	 */
+	private final ArrayBlockingQueue<ByteBuffer> full;
+
+	/**
+	 * The reader thread.
+	 */
+	private final Thread thread;
+
+	/**
+	 * The channel used by the reader thread.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The error of the reader thread, if any.
+	 */
+	private volatile Throwable error = null;
+
+	/**
+	 * Constructor that starts the reader thread.
+	 * @param file is the file to read.
+	 * @param start is the position (in bytes) of the file where the first block starts.
+	 * @param end is the position (in bytes) of the file where the last block ends.
+	 * @param blockSize is the size (in bytes) of the blocks.
+	 * @param depth is the number of blocks that can be read ahead.
+	 * @param byteOrder is the byte order of the blocks.
+	 * @exception IOException if the file can not be opened.
+	 */
+	Prefetcher(File file, final long start, final long end, final int blockSize, int depth, ByteOrder byteOrder) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		free = new ArrayBlockingQueue<ByteBuffer>(depth);
+		full = new ArrayBlockingQueue<ByteBuffer>(depth + 1);
+		for(int i = 0; i < depth; i++) {
+			free.add(ByteBuffer.allocateDirect(blockSize).order(byteOrder));
+		}
+		thread = new Thread("RawImage prefetcher") {
+			public void run() {
+				readBlocks(start, end, blockSize);
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Body of the reader thread.
+	 * @param start is the position (in bytes) of the file where the first block starts.
+	 * @param end is the position (in bytes) of the file where the last block ends.
+	 * @param blockSize is the size (in bytes) of the blocks.
+	 */
+	private void readBlocks(long start, long end, int blockSize) {
+		try {
+			for(long position = start; position < end; position += blockSize) {
+				ByteBuffer block = free.take();
+				block.clear();
+				block.limit((int) Math.min(blockSize, end - position));
+				while(block.hasRemaining()) {
+					if(channel.read(block, position + block.position()) < 0) {
+						throw new EOFException("Can't read position "+(position + block.position()));
+					}
+				}
+				block.flip();
+				full.put(block);
+			}
+			full.put(END);
+		}catch(InterruptedException e) {
+			//closed before reading all the blocks
+		}catch(Throwable e) {
+			error = e;
+		}finally {
+			try {
+				channel.close();
+			}catch(IOException e) {
+				//nothing else can be done
+			}
+		}
+	}
+
+	/**
+	 * Return the next block of the file, waiting until it has been read.
+	 * @return the next block, with position 0 and limit its length, or null if there are no more blocks.
+	 * @exception IOException if the reader thread has failed.
+	 */
+	ByteBuffer take() throws IOException {
+		try {
+			ByteBuffer block;
+			while((block = full.poll(10, TimeUnit.MILLISECONDS)) == null) {
+				if(error != null) {
+					throw new IOException("Can not read the image: " + error.getMessage(), error);
+				}
+			}
+			if(block == END) {
+				full.put(END);
+				return null;
+			}
+			return block;
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading the image", e);
+		}
+	}
+
+	/**
+	 * Give back a block to be filled again.
+	 * @param block is a block returned by take() that will not be used anymore.
+	 */
+	void release(ByteBuffer block) {
+		free.add(block);
+	}
+
+	/**
+	 * Stop the reader thread.
+	 */
+	void close() {
+		thread.interrupt();
+		try {
+			thread.join();
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -53,6 +53,18 @@ public class RawImage {
 	 */
 	public final static int RW = 3; //RW == READ | WRITE
 
+	/**
+	 * Default memory (in bytes) used by the cache of each iterator. It is 16 MB unless the system property
+	 * emporda.cache sets another number of megabytes.
+	 */
+	private static final int DEFAULT_CACHE_MEMORY = megabytes(Math.max(Integer.getInteger("emporda.cache", 16), 1));
+
+	/**
+	 * Default number of blocks read ahead by read only iterators that read the lines in the order of the
+	 * file. It is 0 (no read ahead) unless the system property emporda.prefetch says otherwise.
+	 */
+	private static final int DEFAULT_PREFETCH_DEPTH = Math.max(Integer.getInteger("emporda.prefetch", 0), 0);
+
 	/**
 	 * Represents the geometry of a image in BSQ mode.
 	 * @see Geometry
@@ -64,6 +76,16 @@ public class RawImage {
 	 */
 	private File file;
 
+	/**
+	 * Is the stream the image is read from, or null if it is not read from a stream.
+	 */
+	private InputStream input = null;
+
+	/**
+	 * Is the stream the image is written to, or null if it is not written to a stream.
+	 */
+	private OutputStream output = null;
+
 	/**
 	 * represents the original pixel order of the image by the transformation of BSQ to
 	 * the original pixel order.
@@ -80,6 +102,16 @@ public class RawImage {
 	 */
 	private Vector<RawImageIterator<?> > iterators;
 
+	/**
+	 * Memory (in bytes) used by the cache of each iterator of this image.
+	 */
+	private int cacheMemory = DEFAULT_CACHE_MEMORY;
+
+	/**
+	 * Number of blocks read ahead by the read only iterators of this image.
+	 */
+	private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+
 	/**
 	 * Constructor that obtain the necessary parameters.
 	 * @param name is the file name that contains or will contain the image.
@@ -110,6 +142,85 @@ public class RawImage {
 		iterators = new Vector<RawImageIterator<?> >();
 	}
 
+	/**
+	 * Constructor of an image that is read from a stream. Its lines can only be read once and in order.
+	 * @param input is the stream that contains the image. It is not closed by this class.
+	 * @param geo is the geometry of the image in BSQ mode.
+	 * @param pixelOrder represents the original pixel order of the image by the transformation of BSQ to
+	 * the original pixel order.
+	 * @see Geometry
+	 */
+	public RawImage(InputStream input, int[] geo, int[] pixelOrder) {
+		this((File) null, geo, pixelOrder, READ);
+		this.input = input;
+	}
+
+	/**
+	 * Constructor of an image that is written to a stream. Its lines can only be written once and in order.
+	 * @param output is the stream that will contain the image. It is flushed, but not closed, by this class.
+	 * @param geo is the geometry of the image in BSQ mode.
+	 * @param pixelOrder represents the original pixel order of the image by the transformation of BSQ to
+	 * the original pixel order.
+	 * @see Geometry
+	 */
+	public RawImage(OutputStream output, int[] geo, int[] pixelOrder) {
+		this((File) null, geo, pixelOrder, WRITE);
+		this.output = output;
+	}
+
+	/**
+	 * Convert a number of megabytes to bytes, limited to the largest int.
+	 * @param megabytes is a number of megabytes bigger than 0.
+	 * @return the number of bytes.
+	 */
+	private static int megabytes(int megabytes) {
+		return (int) Math.min((long) megabytes << 20, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Set the memory used by the cache of the iterators of this image built from now on. Transposed reads,
+	 * for instance BIP images read in BSQ order, need a bigger cache than the default 16 MB to avoid reading
+	 * the same chunks of the file many times.
+	 * @param megabytes is the memory of the cache in megabytes.
+	 * @exception IllegalArgumentException if megabytes is not bigger than 0.
+	 */
+	public void setCacheMemory(int megabytes) throws IllegalArgumentException {
+		if(megabytes < 1) {
+			throw new IllegalArgumentException("Cache memory must be bigger than 0");
+		}
+		cacheMemory = megabytes(megabytes);
+	}
+
+	/**
+	 * Return the memory used by the cache of each iterator of this image.
+	 * @return the memory of the cache in bytes.
+	 */
+	public int getCacheMemory() {
+		return cacheMemory;
+	}
+
+	/**
+	 * Set the number of blocks read ahead, in a background thread, by the read only iterators of this
+	 * image built from now on that read the lines in the order of the file. It helps when reads have a
+	 * high latency, for instance in network file systems.
+	 * @param depth is the number of blocks read ahead, or 0 to read the file when lines are requested.
+	 * @exception IllegalArgumentException if depth is negative.
+	 */
+	public void setPrefetchDepth(int depth) throws IllegalArgumentException {
+		if(depth < 0) {
+			throw new IllegalArgumentException("Prefetch depth can not be negative");
+		}
+		prefetchDepth = depth;
+	}
+
+	/**
+	 * Return the number of blocks read ahead by the read only iterators of this image.
+	 * @return the prefetch depth.
+	 */
+	public int getPrefetchDepth() {
+		return prefetchDepth;
+	}
+
 	/**
 	 * Built a ListIterator to do the desired operation with a three-dimensional image.
 	 * @param t represents the type of array that will contain the pixels, for example, new int[0].
@@ -121,7 +232,8 @@ public class RawImage {
 	 * a problem of type conversion, a LackOfPrecisionError will be thrown.
 	 * @return a iterator over all image.
 	 * @exception IOException if an error occurs in read or write operations.
-	 * @exception UnsupportedOperationException if mode is incompatible with mode specified when this object was built.
+	 * @exception UnsupportedOperationException if mode is incompatible with mode specified when this object was built,
+	 * or the image is in a stream and the pixel order transformation does not keep its outermost dimension.
 	 * @exception ClassCastException if the Type of T is not supported.
 	 * @see Geometry
 	 * @see TypeConverter
@@ -130,7 +242,12 @@ public class RawImage {
 		if((mode & READ) > (this.mode & READ) || (mode & WRITE) > (this.mode & WRITE)) {
 			throw new UnsupportedOperationException("The operation " + mode + " is not available in mode " + this.mode);
 		}
-		RawImageIterator<T> it = new RawImageIterator<T>(this, t, file, geo, pixelOrder, pixelOrderTransformation, mode, lossless);
+		RawImageIterator<T> it;
+		if(input != null || output != null) {
+			it = new RawImageIterator<T>(this, t, input, output, geo, pixelOrder, pixelOrderTransformation, mode, lossless);
+		}else {
+			it = new RawImageIterator<T>(this, t, file, geo, pixelOrder, pixelOrderTransformation, mode, lossless);
+		}
 		iterators.add(it);
 		return it;
 	}
@@ -147,7 +264,8 @@ public class RawImage {
 	 * @param band is the index of the band.
 	 * @return a iterator over all band.
 	 * @exception IOException if an error occurs in read or write operations.
-	 * @exception UnsupportedOperationException if mode is incompatible with mode specified when this object was built.
+	 * @exception UnsupportedOperationException if mode is incompatible with mode specified when this object was built,
+	 * or the image is in a stream.
 	 * @exception IndexOutOfBoundsException is the band is out of range of the bands that compose the image.
 	 * @exception ClassCastException if the type of T is not supported.
 	 * @see Geometry
@@ -157,6 +275,9 @@ public class RawImage {
 		if((mode & READ) > (this.mode & READ) || (mode & WRITE) > (this.mode & WRITE)) {
 			throw new UnsupportedOperationException("The operation "+ mode +" is not available in mode " + this.mode);
 		}
+		if(input != null || output != null) {
+			throw new UnsupportedOperationException("Streamed images can not be iterated by band");
+		}
 		RawImageIterator<T> it = new RawImageIterator<T>(this, t, file, geo, pixelOrder, pixelOrderTransformation, mode, lossless, band);
 		iterators.add(it);
 		return it;
@@ -27,6 +27,8 @@
 package GiciFile.RawImage;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 /**
@@ -38,8 +40,9 @@ public class RawImageIterator <T> implements ListIterator <T> {
 
 	/**
 	 * Memory used by cache
+	 * @see RawImage#setCacheMemory(int)
 	 */
-	private int MEMORY_ALLOCATED = 1024*1024*16; //16 MB
+	private int MEMORY_ALLOCATED;
 
 	/**
 	 * Is the instance of class RawImage that built this object, it is used to avoid that garbage collector
@@ -107,14 +110,97 @@ public class RawImageIterator <T> implements ListIterator <T> {
 	private int max;
 
 	/**
-	 * LRU cache
+	 * LRU cache of chunks of the file, kept in the original sample type and byte order.
 	 */
-	private Cache<T> cache;
+	private Cache<ByteBuffer> cache;
+
+	/**
+	 * A chunk evicted from cache that can be reused to read the next one.
+	 */
+	private byte[] spareChunk = null;
 
 	/**
 	 * Chunk size used by cache
 	 */
 	private int chunkSize;
+
+	/**
+	 * Log2 of the size (in bytes) of each region of the file mapped in memory.
+	 */
+	private static final int REGION_BITS = 30;
+
+	/**
+	 * Regions of the file mapped in memory when the iterator only reads, or null if the cache is used.
+	 * Region r holds the bytes [r << REGION_BITS, (r+1) << REGION_BITS) of the file.
+	 */
+	private ByteBuffer[] regions = null;
+
+	/**
+	 * Size (in bytes) of the blocks read ahead.
+	 */
+	private static final int PREFETCH_BLOCK = 1024*1024*4; //4 MB
+
+	/**
+	 * Reads the blocks of the file ahead of this iterator, or null if there is no read ahead.
+	 */
+	private Prefetcher prefetcher = null;
+
+	/**
+	 * The block of the prefetcher with the next bytes to decode, or null.
+	 */
+	private ByteBuffer block = null;
+
+	/**
+	 * The position (in bytes) in the file of the next line that has to be decoded from the prefetched blocks.
+	 */
+	private long prefetchAddress;
+
+	/**
+	 * The number of bytes of the image.
+	 */
+	private long imageBytes;
+
+	/**
+	 * Minimum size (in bytes) of the buffer of write only iterators.
+	 */
+	private static final int SINK_SIZE = 1024*1024*8; //8 MB
+
+	/**
+	 * Buffer of the lines set in write only iterators that keep the pixel order of the file,
+	 * or null if the cache is used. It holds the bytes of the file from sinkAddress.
+	 */
+	private ByteBuffer sink = null;
+
+	/**
+	 * The position (in bytes) in the file of the first byte of sink.
+	 */
+	private long sinkAddress;
+
+	/**
+	 * The stream the image is read from, or null if the image is not read from a stream.
+	 */
+	private InputStream input = null;
+
+	/**
+	 * The stream the image is written to, or null if the image is not written to a stream.
+	 */
+	private OutputStream output = null;
+
+	/**
+	 * Buffer with the bytes of the current slice of a streamed image. A slice is a line when the
+	 * pixel order is kept, or a band of the original pixel order otherwise.
+	 */
+	private ByteBuffer slice = null;
+
+	/**
+	 * The number of lines of each slice of a streamed image.
+	 */
+	private int sliceLines;
+
+	/**
+	 * The next line of a streamed image that has to be read or written.
+	 */
+	private int streamLine;
 	
 	/**
 	 * Constructor that built a iterator over all lines of image.
@@ -143,6 +229,41 @@ public class RawImageIterator <T> implements ListIterator <T> {
 		}
 	}
 
+	/**
+	 * Constructor that built a iterator over all lines of an image that is read from or written to a stream.
+	 * The lines can only be iterated once and in order, and the outermost dimension of the original pixel
+	 * order has to be kept, so a slice of the stream is enough to get or set any line.
+	 * @param image is the instance of class RawImage that built this object, it is used to avoid that garbage collector
+	 * erasure this reference before all instances to RawImageIterator are erasured.
+	 * @param t represents the type of array that will contain the pixels, for example, new int[0].
+	 * @param in is the stream the image is read from, or null if the image is written.
+	 * @param out is the stream the image is written to, or null if the image is read.
+	 * @param geo is the geometry of the image in BSQ mode.
+	 * @param originalPixelOrder represents the original pixel order of the image by the transformation of BSQ to
+	 * the original pixel order.
+	 * @param pixelOrderTransfomation represents the pixel order transformation between original and desired pixel order of
+	 * the image.
+	 * @param mode indicates the operations (read or write) that can be done.
+	 * @param lossless indicates if the conversion of original to desired sample type has to be lossless. If it is true and occurs
+	 * a problem of type conversion, a LackOfPrecisionError will be thrown.
+	 * @exception IOException if an error occurs in read or write operations.
+	 * @exception UnsupportedOperationException if the mode or the pixel order transformation can not be used with a stream.
+	 * @exception ClassCastException if the Type of T is not supported.
+	 * @see Geometry
+	 * @see TypeConverter
+	 */
+	public RawImageIterator(RawImage image, T t, InputStream in, OutputStream out, int geo[], int[] originalPixelOrder, int[] pixelOrderTransformation, int mode, boolean lossless) throws IOException, UnsupportedOperationException, ClassCastException {
+		if((mode == RawImage.READ && in == null) || (mode == RawImage.WRITE && out == null) || mode == RawImage.RW) {
+			throw new UnsupportedOperationException("The operation " + mode + " is not available for a stream");
+		}
+		if(pixelOrderTransformation[Geometry.Z_SIZE] != Geometry.Z_SIZE) {
+			throw new UnsupportedOperationException("Streamed images must keep the outermost dimension of their pixel order");
+		}
+		input = in;
+		output = out;
+		init(image, t, null, geo, originalPixelOrder, pixelOrderTransformation, mode, lossless, 0, geo[originalPixelOrder[pixelOrderTransformation[Geometry.Z_SIZE]]]-1);
+	}
+
 	/**
 	 * Constructor that built a iterator over all lines of the specified band of image.
 	 * @param image is the instance of class RawImage that built this object, it is used to avoid that garbage collector
@@ -219,24 +340,28 @@ public class RawImageIterator <T> implements ListIterator <T> {
 	private void init(RawImage image, T t, File f, int geo[], int[] originalPixelOrder, int[] pixelOrderTransformation, int mode, boolean lossless, int initBand, int finalBand) throws IOException, IndexOutOfBoundsException, ClassCastException {
 		this.image = image;
 		this.mode = mode;
+		MEMORY_ALLOCATED = image.getCacheMemory();
 		
 		//Some verifications
-		if((mode & RawImage.WRITE) == RawImage.WRITE) {
-			file = new RandomAccessFile(f, "rw");
-		}else {
-			file = new RandomAccessFile(f, "r");
+		if(f != null) {
+			if((mode & RawImage.WRITE) == RawImage.WRITE) {
+				file = new RandomAccessFile(f, "rw");
+			}else {
+				file = new RandomAccessFile(f, "r");
+			}
 		}
 		
 		int[] sizeTable = {1/* boolean - 1 byte */, 1/* byte */, 2/* char */, 2/* short */, 4/* int */, 8/* long */, 4/* float */, 8/* double */};
 		size = sizeTable[geo[Geometry.SAMPLE_TYPE]];
 		int length = geo[Geometry.Z_SIZE]*geo[Geometry.Y_SIZE]*geo[Geometry.X_SIZE];
+		long bytes = (long) length * size;
 
-		if((mode & RawImage.WRITE) == 0 && f.length() < length*size) {
+		if(f != null && (mode & RawImage.WRITE) == 0 && f.length() < bytes) {
 			throw new IOException("File with incorrect size detected.");
 		}
 		
-		if(((mode & RawImage.WRITE) == RawImage.WRITE) && f.length() > length*size) {
-			file.setLength(length*size);
+		if(f != null && ((mode & RawImage.WRITE) == RawImage.WRITE) && f.length() > bytes) {
+			file.setLength(bytes);
 		}
 
 		//Initializations of objects to convert order and type
@@ -256,9 +381,39 @@ public class RawImageIterator <T> implements ListIterator <T> {
 		max = (finalBand+1)*linesPerBand;
 		index = min;
 		lastIndex = -1;
+		x_length = geo[originalPixelOrder[pixelOrderTransformation[Geometry.X_SIZE]]];
+
+		imageBytes = bytes;
+
+		//Streamed images are read or written slice by slice
+		if(input != null || output != null) {
+			sliceLines = Arrays.equals(pixelOrderTransformation, OrderConverter.DIM_TRANSP_IDENTITY) ? 1 : linesPerBand;
+			slice = ByteBuffer.allocate(sliceLines*x_length*size).order(ty.getByteOrder());
+			streamLine = min;
+			return;
+		}
+
+		//Read only iterators over the lines in the order of the file can read them ahead
+		if(mode == RawImage.READ && image.getPrefetchDepth() > 0 && Arrays.equals(pixelOrderTransformation, OrderConverter.DIM_TRANSP_IDENTITY)) {
+			prefetchAddress = (long) min * x_length * size;
+			prefetcher = new Prefetcher(f, prefetchAddress, (long) max * x_length * size, PREFETCH_BLOCK, image.getPrefetchDepth(), ty.getByteOrder());
+			return;
+		}
+
+		//Read only iterators decode the lines straight from the file mapped in memory
+		if(mode == RawImage.READ && !"false".equals(System.getProperty("emporda.mmap"))) {
+			map(bytes);
+			return;
+		}
+
+		//Write only iterators that keep the pixel order write the lines sequentially through a buffer
+		if(mode == RawImage.WRITE && Arrays.equals(pixelOrderTransformation, OrderConverter.DIM_TRANSP_IDENTITY)) {
+			sink = ByteBuffer.allocateDirect(Math.max(SINK_SIZE, x_length*size)).order(ty.getByteOrder());
+			sinkAddress = (long) oc.getAddress(min*x_length) * size;
+			return;
+		}
 		
 		//Initialization of cache
-		x_length = geo[originalPixelOrder[pixelOrderTransformation[Geometry.X_SIZE]]];
 		int z_length = geo[originalPixelOrder[pixelOrderTransformation[Geometry.Z_SIZE]]];
 		chunkSize = MEMORY_ALLOCATED / (2 * z_length);
 		chunkSize = chunkSize < x_length ? x_length : chunkSize;
@@ -267,7 +422,45 @@ public class RawImageIterator <T> implements ListIterator <T> {
 		minNumElements = (minNumElements < 10) ? 10 : minNumElements;
 		int numElements = MEMORY_ALLOCATED / chunkSize;
 		numElements = numElements < minNumElements ? minNumElements : numElements;
-		cache = new Cache<T>(numElements);
+		cache = new Cache<ByteBuffer>(numElements);
+	}
+
+	/**
+	 * Map the file in memory in regions of 1 << REGION_BITS bytes. A sample never crosses two
+	 * regions because the region size is a multiple of the size of any sample type.
+	 * @param bytes is the number of bytes of the image.
+	 * @exception IOException if the file can not be mapped.
+	 */
+	private void map(long bytes) throws IOException {
+		FileChannel channel = file.getChannel();
+		long regionSize = 1L << REGION_BITS;
+		regions = new ByteBuffer[(int) ((bytes + regionSize - 1) >>> REGION_BITS)];
+		ByteOrder byteOrder = ty.getByteOrder();
+		for(int r = 0; r < regions.length; r++) {
+			long start = (long) r << REGION_BITS;
+			long regionLength = Math.min(regionSize, bytes - start);
+			regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, start, regionLength).order(byteOrder);
+		}
+	}
+
+	/**
+	 * Decode the line at the current index position directly from the mapped regions of the file.
+	 * @param line is the array where the pixels of the line will be stored.
+	 */
+	private void getMappedElement(T line) {
+		long address = (long) oc.getAddress(index*x_length) * size;
+		long step = (long) (offset < 1 ? 1 : offset) * size;
+		int decoded = 0;
+		while(decoded < x_length) {
+			ByteBuffer region = regions[(int) (address >>> REGION_BITS)];
+			int position = (int) (address & ((1L << REGION_BITS) - 1));
+			//samples of the line that are in this region
+			long available = (region.limit() - position + step - 1) / step;
+			int count = (int) Math.min(available, x_length - decoded);
+			ty.bytetoT(region, position, (int) Math.min(step, Integer.MAX_VALUE), line, decoded, count);
+			decoded += count;
+			address += count * step;
+		}
 	}
 
 	/**
@@ -298,85 +491,210 @@ public class RawImageIterator <T> implements ListIterator <T> {
 	}
 
 	/**
-	 * Return the element at the current index position
-	 * @return a byte[] that represents the element at the current index position or null 
-	 * if read is not allowed.
-	 * @exception NoSuchElementException is the index is not between min and max.
+	 * Decode the line at the current index position from the blocks read ahead. If the lines are not
+	 * requested in order, the read ahead is stopped and the file is mapped in memory.
+	 * @param line is the array where the pixels of the line will be stored.
+	 * @exception NoSuchElementException if the blocks can not be read.
 	 */
-	private byte[] getElement() throws NoSuchElementException {
-		if((mode & RawImage.READ) == 0) {
-			return null;
-		}
-		int address;
-		byte b[] = new byte[x_length*size];
-		byte buffer[] = new byte[chunkSize];
-		byte tmp[];
-		address = oc.getAddress(index*x_length)*size;
-		int pixelsReaded = 0;
-		int maxOffset = max*x_length*size;
+	private void getPrefetchedElement(T line) throws NoSuchElementException {
+		long address = (long) index * x_length * size;
 		try {
-			do {
-				Cache<T>.Block tmpBlock = cache.get(address/chunkSize);
-				T data;
-				if(tmpBlock == null) { //this data is not in cache
-					int offset = address - (address % chunkSize);
-					file.seek(offset);
-					Arrays.fill(buffer, (byte)0);
-					int readed = file.read(buffer, 0, chunkSize);
-					if(readed > maxOffset - offset) { //because maxOffset can be smaller than file length
-						readed = maxOffset - offset;
-					}
-					if(readed < chunkSize) { //read less data than chunkSize can be acceptable in some cases
-						if(readed < maxOffset - offset) {
-							if((mode & RawImage.WRITE) == 0) {
-								throw new NoSuchElementException("Can't read position "+offset);
-							}
-							/*
-							 * If we can write in file, this case is not a problem because
-							 * we don't need that file has the length according to the geometry 
-							 * of the image.
-							 */
-							readed = (chunkSize < maxOffset-offset) ? chunkSize : maxOffset-offset;
-						}
-						byte tmp2[] = new byte[readed];
-						System.arraycopy(buffer, 0, tmp2, 0, readed);
-						data = ty.bytetoT(tmp2);
-					} else { //one block of data was correctly readed
-						data = ty.bytetoT(buffer);
+			if(address != prefetchAddress) {
+				stopPrefetcher();
+				map(imageBytes);
+				getMappedElement(line);
+				return;
+			}
+			int decoded = 0;
+			while(decoded < x_length) {
+				if(block == null || !block.hasRemaining()) {
+					if(block != null) {
+						prefetcher.release(block);
 					}
-					Cache<T>.Block block = cache.set(cache.new Block(data, address/chunkSize, false));
-					if(block != null && block.dirty) {//save replaced block in disk
-						tmp = ty.TtoByte(block.data);
-						file.seek(block.position*chunkSize);
-						file.write(tmp);
+					block = prefetcher.take();
+					if(block == null) {
+						throw new NoSuchElementException("Can't read position "+address);
 					}
-				}else { //data is in cache
-					data = tmpBlock.data;
 				}
-				//type conversion
-				tmp = ty.TtoByte(data);
-				//order conversion
-				if(offset < 1) { //pixels are consecutive
-					int initCopyPos = address % chunkSize;
-					int lengthCopy = (x_length-pixelsReaded)*size;
-					lengthCopy = (initCopyPos + lengthCopy > chunkSize) ? chunkSize - initCopyPos : lengthCopy;
-					System.arraycopy(tmp, initCopyPos, b, pixelsReaded*size, lengthCopy);
-					pixelsReaded += lengthCopy/size;
-					address += lengthCopy;
-				}else {
-					int nextAddress = address % chunkSize;
-					do {
-						System.arraycopy(tmp, nextAddress, b, pixelsReaded*size, size);
-						pixelsReaded++;
-						nextAddress += offset*size;
-					}while(nextAddress < chunkSize && pixelsReaded < x_length);
-					address += nextAddress - (address % chunkSize);
+				int count = Math.min(block.remaining() / size, x_length - decoded);
+				ty.bytetoT(block, block.position(), size, line, decoded, count);
+				block.position(block.position() + count * size);
+				decoded += count;
+			}
+		}catch(IOException e) {
+			throw new NoSuchElementException(e.getMessage());
+		}
+		prefetchAddress = address + (long) x_length * size;
+	}
+
+	/**
+	 * Stop the read ahead of blocks.
+	 */
+	private void stopPrefetcher() {
+		prefetcher.close();
+		prefetcher = null;
+		block = null;
+	}
+
+	/**
+	 * Return the chunk of the file with the given index, reading it if it is not in cache.
+	 * @param chunk is the index of the chunk.
+	 * @param dirty indicates if the chunk is going to be modified.
+	 * @return a ByteBuffer with the bytes of the chunk.
+	 * @exception IOException if an error occurs in read or write operations.
+	 * @exception NoSuchElementException if the chunk is out of the file and write is not available.
+	 */
+	private ByteBuffer getChunk(int chunk, boolean dirty) throws IOException, NoSuchElementException {
+		Cache<ByteBuffer>.Block tmpBlock = cache.get(chunk);
+		if(tmpBlock != null) { //data is in cache
+			if(dirty) {
+				tmpBlock.dirty = true;
+			}
+			return tmpBlock.data;
+		}
+		//this data is not in cache
+		long maxOffset = (long) max*x_length*size;
+		long offset = (long) chunk*chunkSize;
+		byte buffer[] = spareChunk != null ? spareChunk : new byte[chunkSize];
+		spareChunk = null;
+		file.seek(offset);
+		int readed = file.read(buffer, 0, chunkSize);
+		Arrays.fill(buffer, readed < 0 ? 0 : readed, chunkSize, (byte)0);
+		if(readed > maxOffset - offset) { //because maxOffset can be smaller than file length
+			readed = (int) (maxOffset - offset);
+		}
+		if(readed < chunkSize) { //read less data than chunkSize can be acceptable in some cases
+			if(readed < maxOffset - offset) {
+				if((mode & RawImage.WRITE) == 0) {
+					throw new NoSuchElementException("Can't read position "+offset);
 				}
-			}while(pixelsReaded < x_length);
+				/*
+				 * If we can write in file, this case is not a problem because
+				 * we don't need that file has the length according to the geometry 
+				 * of the image.
+				 */
+				readed = (chunkSize < maxOffset-offset) ? chunkSize : (int) (maxOffset-offset);
+			}
+		}
+		ByteBuffer data = ByteBuffer.wrap(buffer, 0, readed).order(ty.getByteOrder());
+		Cache<ByteBuffer>.Block block = cache.set(cache.new Block(data, chunk, dirty));
+		if(block != null) {
+			if(block.dirty) { //save replaced block in disk
+				file.seek((long) block.position*chunkSize);
+				file.write(block.data.array(), 0, block.data.limit());
+			}
+			if(block.data.array().length == chunkSize) {
+				spareChunk = block.data.array();
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Decode the line at the current index position from the cached chunks of the file.
+	 * @param line is the array where the pixels of the line will be stored.
+	 * @exception NoSuchElementException is the index is not between min and max.
+	 */
+	private void getCachedElement(T line) throws NoSuchElementException {
+		long address = (long) oc.getAddress(index*x_length)*size;
+		int step = (offset < 1 ? 1 : offset)*size;
+		int decoded = 0;
+		try {
+			while(decoded < x_length) {
+				ByteBuffer chunk = getChunk((int) (address/chunkSize), false);
+				int position = (int) (address % chunkSize);
+				//samples of the line that are in this chunk
+				int count = Math.min((chunkSize - position + step - 1) / step, x_length - decoded);
+				ty.bytetoT(chunk, position, step, line, decoded, count);
+				decoded += count;
+				address += count * step;
+			}
 		}catch(IOException e) {
 			throw new NoSuchElementException(e.getMessage());
 		}
-		return b;
+	}
+
+	/**
+	 * Decode the line at the current index position from the slice of the stream, that is read
+	 * when the line is the first one of the slice.
+	 * @param line is the array where the pixels of the line will be stored.
+	 * @exception NoSuchElementException if the line is not the next one of the stream or it can not be read.
+	 */
+	private void getStreamedElement(T line) throws NoSuchElementException {
+		if(index != streamLine) {
+			throw new NoSuchElementException("Streamed images can only be read in order");
+		}
+		if(index % sliceLines == 0) {
+			byte[] bytes = slice.array();
+			int read = 0;
+			try {
+				while(read < bytes.length) {
+					int n = input.read(bytes, read, bytes.length - read);
+					if(n < 0) {
+						throw new NoSuchElementException("Unexpected end of stream reading line " + index);
+					}
+					read += n;
+				}
+			}catch(IOException e) {
+				throw new NoSuchElementException(e.getMessage());
+			}
+		}
+		ty.bytetoT(slice, getSlicePosition(index), (offset < 1 ? 1 : offset)*size, line, 0, x_length);
+		streamLine++;
+	}
+
+	/**
+	 * Set the last element returned by previous() or next() in the slice of the stream, that is
+	 * written when the line is the last one of the slice.
+	 * @param t is the element.
+	 * @exception NoSuchElementException if the line is not the next one of the stream or it can not be written.
+	 */
+	private void setStreamed(T t) throws NoSuchElementException {
+		if(lastIndex != streamLine) {
+			throw new NoSuchElementException("Streamed images can only be written in order");
+		}
+		ty.TtoByte(t, 0, x_length, slice, getSlicePosition(lastIndex), (offset < 1 ? 1 : offset)*size);
+		streamLine++;
+		if(streamLine % sliceLines == 0) {
+			try {
+				output.write(slice.array());
+			}catch(IOException e) {
+				throw new NoSuchElementException(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Return the position in the slice of a streamed image of the first sample of a line.
+	 * @param line is the index of the line.
+	 * @return the position (in bytes) of the first sample of the line in slice.
+	 */
+	private int getSlicePosition(int line) {
+		int first = line - line % sliceLines;
+		return (oc.getAddress(line*x_length) - first*x_length)*size;
+	}
+
+	/**
+	 * Return the element at the current index position
+	 * @return a T that represents the element at the current index position or null 
+	 * if read is not allowed.
+	 * @exception NoSuchElementException is the index is not between min and max.
+	 */
+	private T getElement() throws NoSuchElementException {
+		if((mode & RawImage.READ) == 0) {
+			return null;
+		}
+		T line = ty.newArray(x_length);
+		if(slice != null) {
+			getStreamedElement(line);
+		}else if(prefetcher != null) {
+			getPrefetchedElement(line);
+		}else if(regions != null) {
+			getMappedElement(line);
+		}else {
+			getCachedElement(line);
+		}
+		return line;
 	}
 
 	/**
@@ -389,10 +707,58 @@ public class RawImageIterator <T> implements ListIterator <T> {
 		if(!hasNext()) {
 			throw new NoSuchElementException("Image has no next element");
 		}
-		byte[] b = getElement();
+		T line = getElement();
+		lastIndex = index;
+		index++;
+		return line;
+	}
+
+	/**
+	 * Read the next element into an array supplied by the caller, so lines can be read
+	 * without allocating a new array for each one.
+	 * @param dst is the array where the next element will be stored. It must have room for a line.
+	 * @exception UnsupportedOperationException if read is not available.
+	 * @exception NoSuchElementException is the index is greatest than max index.
+	 * @see #next()
+	 */
+	public void nextInto(T dst) throws UnsupportedOperationException, NoSuchElementException {
+		if((mode & RawImage.READ) == 0) {
+			throw new UnsupportedOperationException("Read operations are not available in this mode");
+		}
+		if(!hasNext()) {
+			throw new NoSuchElementException("Image has no next element");
+		}
+		if(slice != null) {
+			getStreamedElement(dst);
+		}else if(prefetcher != null) {
+			getPrefetchedElement(dst);
+		}else if(regions != null) {
+			getMappedElement(dst);
+		}else {
+			getCachedElement(dst);
+		}
+		lastIndex = index;
+		index++;
+	}
+
+	/**
+	 * Move to the next element and set it with the values of an array supplied by the caller. It is
+	 * equivalent to call next() and set(src), but the element is not read nor allocated before being set.
+	 * @param src is the array with the values of the element. It is not modified nor kept.
+	 * @exception UnsupportedOperationException if write is not available.
+	 * @exception NoSuchElementException is the index is greatest than max index.
+	 * @see #set(T)
+	 */
+	public void setFrom(T src) throws UnsupportedOperationException, NoSuchElementException {
+		if((mode & RawImage.WRITE) == 0) {
+			throw new UnsupportedOperationException("Write operations are not available in this mode");
+		}
+		if(!hasNext()) {
+			throw new NoSuchElementException("Image has no next element");
+		}
 		lastIndex = index;
 		index++;
-		return b == null ? null : ty.bytetoT(b);
+		set(src);
 	}
 
 	/**
@@ -416,8 +782,7 @@ public class RawImageIterator <T> implements ListIterator <T> {
 		}
 		lastIndex = index;
 		index--;
-		byte[] b = getElement();
-		return b == null ? null : ty.bytetoT(getElement());
+		return getElement();
 	}
 
 	/**
@@ -452,85 +817,105 @@ public class RawImageIterator <T> implements ListIterator <T> {
 		if(lastIndex == -1) {
 			throw new IllegalStateException("Method next hasn't been called");
 		}
-		int address;
-		byte b[] = ty.TtoByte(t);
-		byte buffer[] = new byte[chunkSize];
-		byte tmp[];
-		address = oc.getAddress(lastIndex*x_length)*size;
-		int pixelsWritted = 0;
-		Cache<T>.Block blockModified;
-		int maxOffset = max*x_length*size;
+		if(sink != null) {
+			setSink(t);
+			return;
+		}
+		if(slice != null) {
+			setStreamed(t);
+			return;
+		}
+		long address = (long) oc.getAddress(lastIndex*x_length)*size;
+		int step = (offset < 1 ? 1 : offset)*size;
+		int encoded = 0;
 		try {
-			do {
-				blockModified = cache.get(address/chunkSize);
-				T data;
-				if(blockModified == null) {  //this data is not in cache
-					int offset = address - (address % chunkSize);
-					file.seek(offset);
-					Arrays.fill(buffer, (byte)0);
-					int readed = file.read(buffer, 0, chunkSize);
-					if(readed > maxOffset - offset) { //because maxOffset can be smaller than file length
-						readed = maxOffset - offset;
-					}
-					if(readed < chunkSize) {//read less data than chunkSize is accepted
-						if(readed < maxOffset - offset) {
-							readed = (chunkSize < maxOffset-offset) ? chunkSize : maxOffset-offset;
-						}
-						byte tmp2[] = new byte[readed];
-						System.arraycopy(buffer, 0, tmp2, 0, readed);
-						data = ty.bytetoT(tmp2);
-					} else {//one block of data was correctly readed
-						data = ty.bytetoT(buffer);
-					}
-					blockModified = cache.new Block(data, address/chunkSize, true);
-					Cache<T>.Block block = cache.set(blockModified);
-					if(block != null && block.dirty) {//save replaced block in disk
-						tmp = ty.TtoByte(block.data);
-						file.seek(block.position*chunkSize);
-						file.write(tmp);
-					}
-				}else { //data is in cache
-					data = blockModified.data;
-					blockModified.dirty = true;
-				}
-				//type conversion
-				tmp = ty.TtoByte(data);
-				//order conversion
-				if(offset < 1) { //pixels are consecutive
-					int initCopyPos = address % chunkSize;
-					int lengthCopy = (x_length-pixelsWritted)*size;
-					lengthCopy = (initCopyPos + lengthCopy > chunkSize) ? chunkSize - initCopyPos : lengthCopy;
-					System.arraycopy(b, pixelsWritted*size, tmp, initCopyPos, lengthCopy);
-					pixelsWritted += lengthCopy/size;
-					address += lengthCopy;
-				}else {
-					int nextAddress = address % chunkSize;
-					do {
-						System.arraycopy(b, pixelsWritted*size, tmp, nextAddress, size);
-						pixelsWritted++;
-						nextAddress += offset*size;
-					}while(nextAddress < chunkSize && pixelsWritted < x_length);
-					address += nextAddress - (address % chunkSize);
-				}
-				blockModified.data = ty.bytetoT(tmp);
-			}while(pixelsWritted < x_length);
+			while(encoded < x_length) {
+				ByteBuffer chunk = getChunk((int) (address/chunkSize), true);
+				int position = (int) (address % chunkSize);
+				//samples of the line that are in this chunk
+				int count = Math.min((chunkSize - position + step - 1) / step, x_length - encoded);
+				ty.TtoByte(t, encoded, count, chunk, position, step);
+				encoded += count;
+				address += count * step;
+			}
 		}catch(IOException e) {
 			throw new NoSuchElementException(e.getMessage());
 		}
 	}
 
+	/**
+	 * Set the last element returned by previous() or next() in the buffer of write only iterators.
+	 * Consecutive lines are gathered in the buffer, that is written when it is full or when a line
+	 * that does not follow the buffered ones is set.
+	 * @param t is the element.
+	 * @exception NoSuchElementException if the buffer can not be written.
+	 */
+	private void setSink(T t) throws NoSuchElementException {
+		long address = (long) lastIndex * x_length * size;
+		int lineBytes = x_length * size;
+		try {
+			if(address != sinkAddress + sink.position() || sink.remaining() < lineBytes) {
+				flushSink();
+				sinkAddress = address;
+			}
+		}catch(IOException e) {
+			throw new NoSuchElementException(e.getMessage());
+		}
+		ty.TtoByte(t, 0, x_length, sink, sink.position(), size);
+		sink.position(sink.position() + lineBytes);
+	}
+
+	/**
+	 * Write the lines gathered in the buffer of write only iterators to the file.
+	 * @exception IOException if the file can not be written.
+	 */
+	private void flushSink() throws IOException {
+		FileChannel channel = file.getChannel();
+		sink.flip();
+		long address = sinkAddress;
+		while(sink.hasRemaining()) {
+			address += channel.write(sink, address);
+		}
+		sinkAddress = address;
+		sink.clear();
+	}
+
 	/**
 	 * Close the file associated at this iterator.
 	 * @exception IOException if there are any problems closing the file associated.
 	 */
 	public void close() throws IOException {
-		ArrayList<Cache<T>.Block> pages = cache.flush();
-		Iterator<Cache<T>.Block> itr = pages.iterator();
+		if(prefetcher != null) {
+			stopPrefetcher();
+		}
+		if(slice != null) {
+			//the stream is flushed but it is not closed, it belongs to who built the image
+			if(output != null) {
+				if(streamLine % sliceLines != 0) {
+					output.write(slice.array());
+				}
+				output.flush();
+			}
+			slice = null;
+			image = null;
+			return;
+		}
+		if(cache == null) {
+			if(sink != null) {
+				flushSink();
+				sink = null;
+			}
+			regions = null;
+			file.close();
+			image = null;
+			return;
+		}
+		ArrayList<Cache<ByteBuffer>.Block> pages = cache.flush();
+		Iterator<Cache<ByteBuffer>.Block> itr = pages.iterator();
 		while(itr.hasNext()) {
-			Cache<T>.Block page = itr.next();
-			byte tmp[] = ty.TtoByte(page.data);
-			file.seek(page.position*chunkSize);
-			file.write(tmp);
+			Cache<ByteBuffer>.Block page = itr.next();
+			file.seek((long) page.position*chunkSize);
+			file.write(page.data.array(), 0, page.data.limit());
 		}
 		file.close();
 		image = null;
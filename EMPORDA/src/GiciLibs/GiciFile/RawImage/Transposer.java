@@ -0,0 +1,302 @@
+/*
+ * GICI Library -
+ * Copyright (C) 2012  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * gici-info@deic.uab.es
+ */
+package GiciFile.RawImage;
+
+import java.io.*;
+
+/**
+ * Rewrites an image file in another pixel order, so it can be read line by line sequentially
+ * instead of gathering each line from samples spread over all the file. The input file is read
+ * sequentially in slabs and transposed in memory by tiles that fit in the processor cache.
+ * When the image does not fit in the memory given, the input is first split in temporary files,
+ * one for each group of bands (in the desired pixel order), that are transposed one by one.
+ * Samples are moved as bytes, so the sample type and the byte order are not changed.
+ */
+public class Transposer {
+
+	/**
+	 * Side (in samples) of the square tiles transposed at once.
+	 */
+	private static final int TILE = 64;
+
+	/**
+	 * Bytes read from the input file at once.
+	 */
+	private static final int SLAB_SIZE = 1024*1024*16; //16 MB
+
+	/**
+	 * The length of the three dimensions of the image in the original pixel order.
+	 */
+	private final int[] sourceSize;
+
+	/**
+	 * The pixel order transformation between original and desired pixel order of the image.
+	 */
+	private final int[] transformation;
+
+	/**
+	 * The pixel order of the transposed file, by the transformation of BSQ to it.
+	 */
+	private final int[] pixelOrder;
+
+	/**
+	 * The size (in bytes) of the samples.
+	 */
+	private final int size;
+
+	/**
+	 * Memory (in bytes) that can be used to transpose the image.
+	 */
+	private final long memory;
+
+	/**
+	 * Constructor that obtain the necessary parameters.
+	 * @param geo is the geometry of the image in BSQ mode.
+	 * @param originalPixelOrder represents the original pixel order of the image by the transformation of BSQ to
+	 * the original pixel order.
+	 * @param pixelOrderTransformation represents the pixel order transformation between original and desired pixel order of
+	 * the image.
+	 * @param memory is the memory (in bytes) that can be used to transpose the image.
+	 * @see Geometry
+	 */
+	public Transposer(int[] geo, int[] originalPixelOrder, int[] pixelOrderTransformation, long memory) {
+		int[] sizeTable = {1/* boolean - 1 byte */, 1/* byte */, 2/* char */, 2/* short */, 4/* int */, 8/* long */, 4/* float */, 8/* double */};
+		size = sizeTable[geo[Geometry.SAMPLE_TYPE]];
+		sourceSize = new int[3];
+		pixelOrder = new int[3];
+		transformation = pixelOrderTransformation.clone();
+		for(int d = 0; d < 3; d++) {
+			sourceSize[d] = geo[originalPixelOrder[d]];
+			pixelOrder[d] = originalPixelOrder[pixelOrderTransformation[d]];
+		}
+		this.memory = Math.min(memory, Integer.MAX_VALUE - 8);
+	}
+
+	/**
+	 * Return the pixel order of the transposed file, that has to be used to open it with RawImage
+	 * and a DIM_TRANSP_IDENTITY transformation.
+	 * @return the pixel order of the transposed image by the transformation of BSQ to it.
+	 */
+	public int[] getPixelOrder() {
+		return pixelOrder.clone();
+	}
+
+	/**
+	 * Write the image of the input file in the desired pixel order to the output file.
+	 * @param input is the file that contains the image in the original pixel order.
+	 * @param output is the file where the image in the desired pixel order will be written. The temporary
+	 * files, if they are needed, are created in the same directory.
+	 * @exception IOException if an error occurs in read or write operations.
+	 */
+	public void transpose(File input, File output) throws IOException {
+		int[] outerSize = new int[3];
+		for(int d = 0; d < 3; d++) {
+			outerSize[d] = sourceSize[transformation[d]];
+		}
+		//bytes of each index of the outer dimension in the desired pixel order
+		long unit = (long) outerSize[1] * outerSize[2] * size;
+		int groupLength = (int) Math.max(1, Math.min(outerSize[0], memory / (2 * unit)));
+		int groups = (outerSize[0] + groupLength - 1) / groupLength;
+		if(input.length() < outerSize[0] * unit) {
+			throw new IOException("File with incorrect size detected.");
+		}
+		byte[] src = new byte[(int) (groupLength * unit)];
+		byte[] dst = new byte[src.length];
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(output), SLAB_SIZE);
+		try {
+			if(groups == 1) {
+				readFully(input, src, outerSize[0] * unit);
+				transposeBlock(src, sourceSize, dst);
+				out.write(dst, 0, (int) (outerSize[0] * unit));
+			}else {
+				File[] parts = split(input, output.getParentFile(), groupLength, groups);
+				for(int g = 0; g < groups; g++) {
+					int length = Math.min(groupLength, outerSize[0] - g * groupLength);
+					int[] partSize = sourceSize.clone();
+					partSize[transformation[0]] = length;
+					readFully(parts[g], src, length * unit);
+					parts[g].delete();
+					transposeBlock(src, partSize, dst);
+					out.write(dst, 0, (int) (length * unit));
+				}
+			}
+		}finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write an image that is in memory in the desired pixel order.
+	 * @param input is the image in the original pixel order.
+	 * @param output is where the image in the desired pixel order will be stored.
+	 * @exception IllegalArgumentException if input or output are shorter than the image.
+	 */
+	public void transpose(byte[] input, byte[] output) throws IllegalArgumentException {
+		long bytes = (long) sourceSize[0] * sourceSize[1] * sourceSize[2] * size;
+		if(input.length < bytes || output.length < bytes) {
+			throw new IllegalArgumentException("The image needs " + bytes + " bytes");
+		}
+		transposeBlock(input, sourceSize, output);
+	}
+
+	/**
+	 * Read the first bytes of a file.
+	 * @param file is the file to read.
+	 * @param buffer is where the bytes are stored.
+	 * @param length is the number of bytes to read.
+	 * @exception IOException if the file is shorter than length or it can not be read.
+	 */
+	private void readFully(File file, byte[] buffer, long length) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(buffer, 0, (int) length);
+		}finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Split the input file in one temporary file for each group of indexes of the outer dimension
+	 * of the desired pixel order. Each temporary file keeps the original pixel order.
+	 * @param input is the file that contains the image in the original pixel order.
+	 * @param directory is where the temporary files are created.
+	 * @param groupLength is the number of indexes of the outer dimension in each group.
+	 * @param groups is the number of groups.
+	 * @return the temporary files.
+	 * @exception IOException if an error occurs in read or write operations.
+	 */
+	private File[] split(File input, File directory, int groupLength, int groups) throws IOException {
+		File[] parts = new File[groups];
+		OutputStream[] outs = new OutputStream[groups];
+		int axis = transformation[0];
+		int rowBytes = sourceSize[1] * sourceSize[2] * size;
+		int slabRows = Math.max(1, Math.min(sourceSize[0], SLAB_SIZE / rowBytes));
+		byte[] slab = new byte[slabRows * rowBytes];
+		DataInputStream in = new DataInputStream(new FileInputStream(input));
+		try {
+			for(int g = 0; g < groups; g++) {
+				parts[g] = File.createTempFile("transpose", ".part", directory);
+				parts[g].deleteOnExit();
+				outs[g] = new BufferedOutputStream(new FileOutputStream(parts[g]), 1 << 16);
+			}
+			for(int row = 0; row < sourceSize[0]; row += slabRows) {
+				int rows = Math.min(slabRows, sourceSize[0] - row);
+				in.readFully(slab, 0, rows * rowBytes);
+				for(int r = 0; r < rows; r++) {
+					int rowStart = r * rowBytes;
+					switch(axis) {
+					case 0: //whole rows belong to a group
+						outs[(row + r) / groupLength].write(slab, rowStart, rowBytes);
+						break;
+					case 1: //each group has consecutive lines of the row
+						writeRuns(outs, slab, rowStart, sourceSize[1], sourceSize[2] * size, groupLength);
+						break;
+					default: //each group has consecutive samples of each line
+						for(int l = 0; l < sourceSize[1]; l++) {
+							writeRuns(outs, slab, rowStart + l * sourceSize[2] * size, sourceSize[2], size, groupLength);
+						}
+						break;
+					}
+				}
+			}
+		}finally {
+			in.close();
+			for(int g = 0; g < groups; g++) {
+				if(outs[g] != null) {
+					outs[g].close();
+				}
+			}
+		}
+		return parts;
+	}
+
+	/**
+	 * Write each group of consecutive elements of a buffer to the stream of its group.
+	 * @param outs are the streams of the groups.
+	 * @param buffer contains the elements.
+	 * @param start is the position of the first element in buffer.
+	 * @param elements is the number of elements.
+	 * @param elementBytes is the size (in bytes) of each element.
+	 * @param groupLength is the number of elements of each group.
+	 * @exception IOException if an error occurs in write operations.
+	 */
+	private void writeRuns(OutputStream[] outs, byte[] buffer, int start, int elements, int elementBytes, int groupLength) throws IOException {
+		for(int g = 0, e = 0; e < elements; g++, e += groupLength) {
+			int length = Math.min(groupLength, elements - e);
+			outs[g].write(buffer, start + e * elementBytes, length * elementBytes);
+		}
+	}
+
+	/**
+	 * Transpose an image in the original pixel order that is in memory.
+	 * @param src is the image in the original pixel order.
+	 * @param srcSize is the length of the three dimensions of the image in src.
+	 * @param dst is where the image in the desired pixel order is stored.
+	 */
+	private void transposeBlock(byte[] src, int[] srcSize, byte[] dst) {
+		//strides (in bytes) in src and in dst of the three dimensions of the desired pixel order
+		int[] srcStride = {srcSize[1] * srcSize[2] * size, srcSize[2] * size, size};
+		int[] dstSize = new int[3];
+		int[] stride = new int[3];
+		for(int d = 0; d < 3; d++) {
+			dstSize[d] = srcSize[transformation[d]];
+			stride[d] = srcStride[transformation[d]];
+		}
+		int[] dstStride = {dstSize[1] * dstSize[2] * size, dstSize[2] * size, size};
+
+		if(transformation[2] == 2) { //lines are kept, they only change of place
+			int lineBytes = dstSize[2] * size;
+			for(int i0 = 0; i0 < dstSize[0]; i0++) {
+				for(int i1 = 0; i1 < dstSize[1]; i1++) {
+					System.arraycopy(src, i0 * stride[0] + i1 * stride[1], dst, i0 * dstStride[0] + i1 * dstStride[1], lineBytes);
+				}
+			}
+			return;
+		}
+		//q is the dimension that is consecutive in src, r the remaining one
+		int q = transformation[0] == 2 ? 0 : 1;
+		int r = 1 - q;
+		for(int ir = 0; ir < dstSize[r]; ir++) {
+			for(int tq = 0; tq < dstSize[q]; tq += TILE) {
+				int endQ = Math.min(tq + TILE, dstSize[q]);
+				for(int t2 = 0; t2 < dstSize[2]; t2 += TILE) {
+					int end2 = Math.min(t2 + TILE, dstSize[2]);
+					for(int iq = tq; iq < endQ; iq++) {
+						int s = ir * stride[r] + iq * stride[q] + t2 * stride[2];
+						int d = ir * dstStride[r] + iq * dstStride[q] + t2 * size;
+						for(int i2 = t2; i2 < end2; i2++, s += stride[2], d += size) {
+							for(int b = 0; b < size; b++) {
+								dst[d + b] = src[s + b];
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+}
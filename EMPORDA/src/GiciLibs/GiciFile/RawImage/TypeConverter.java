@@ -483,6 +483,121 @@ public class TypeConverter <T> {
 		return null;
 	}
 
+	/**
+	 * Cast elements of a int[], long[] or float[] straight into a ByteBuffer, without building an
+	 * intermediate byte[]. Samples are written with absolute puts, so the position of buffer is not
+	 * modified, and with the byte order of buffer, that has to be set to {@link #getByteOrder()}.
+	 * The conversion follows the same rules than {@link #TtoByte(Object)}.
+	 * @param src is the array that contains the samples.
+	 * @param srcOffset is the position of src of the first sample to cast.
+	 * @param count is the number of samples to cast.
+	 * @param buffer is the buffer where the samples will be stored in the original sample type.
+	 * @param position is the position (in bytes) of buffer where the first sample will be stored.
+	 * @param stride is the distance (in bytes) between consecutive samples in buffer.
+	 */
+	public void TtoByte(T src, int srcOffset, int count, ByteBuffer buffer, int position, int stride) {
+		final int sampleType = geo[Geometry.SAMPLE_TYPE];
+		final int end = srcOffset + count;
+
+		switch(type) {
+		case INT_ARRAY:
+			int[] line = (int[]) src;
+			for(int i=srcOffset;i<end;i++, position+=stride) {
+				putSample(buffer, position, sampleType, line[i]);
+			}
+			break;
+		case LONG_ARRAY:
+			long[] longSamples = (long[]) src;
+			for(int i=srcOffset;i<end;i++, position+=stride) {
+				putSample(buffer, position, sampleType, longSamples[i]);
+			}
+			break;
+		case FLOAT_ARRAY:
+			float[] imageSamples = (float[]) src;
+			for(int i=srcOffset;i<end;i++, position+=stride) {
+				float f = imageSamples[i];
+				switch(sampleType) {
+				case Geometry.BOOLEAN:
+					buffer.put(position, (byte)(f == 0 ? 0 : 1));
+					break;
+				case Geometry.FLOAT:
+					buffer.putFloat(position, f);
+					break;
+				case Geometry.DOUBLE:
+					buffer.putDouble(position, f);
+					break;
+				default:
+					if(!isInteger(f) && lossless) {
+						throw new LackOfPrecisionError("Lack of precision with one pixel");
+					}
+					putSample(buffer, position, sampleType, (long) f);
+					break;
+				}
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Write one integer sample in the buffer.
+	 * @param buffer is the buffer where the sample will be stored.
+	 * @param position is the position (in bytes) of the sample in buffer.
+	 * @param sampleType is the original sample type.
+	 * @param l is the value of the sample.
+	 */
+	private void putSample(ByteBuffer buffer, int position, int sampleType, long l) {
+		switch(sampleType) {
+		case Geometry.BOOLEAN:
+			buffer.put(position, (byte)(l == 0 ? 0 : 1));
+			break;
+		case Geometry.U_BYTE:
+			buffer.put(position, (byte) fitRange(l, 0, 255));
+			break;
+		case Geometry.U_SHORT:
+			buffer.putChar(position, (char) fitRange(l, Character.MIN_VALUE, Character.MAX_VALUE));
+			break;
+		case Geometry.SHORT:
+			buffer.putShort(position, (short) fitRange(l, Short.MIN_VALUE, Short.MAX_VALUE));
+			break;
+		case Geometry.INT:
+			buffer.putInt(position, (int) fitRange(l, Integer.MIN_VALUE, Integer.MAX_VALUE));
+			break;
+		case Geometry.LONG:
+			buffer.putLong(position, l);
+			break;
+		case Geometry.FLOAT:
+			if(!fitsInFloat(l) && lossless) {
+				throw new LackOfPrecisionError("Lack of precision with one pixel");
+			}
+			buffer.putFloat(position, (float) l);
+			break;
+		case Geometry.DOUBLE:
+			if(!fitsInDouble(l) && lossless) {
+				throw new LackOfPrecisionError("Lack of precision with one pixel");
+			}
+			buffer.putDouble(position, (double) l);
+			break;
+		}
+	}
+
+	/**
+	 * Check that a sample is in the range of the original sample type. If it is not, the sample
+	 * is clamped or, if the conversion has to be lossless, a LackOfPrecisionError is thrown.
+	 * @param l is the value of the sample.
+	 * @param min is the lowest value of the original sample type.
+	 * @param max is the largest value of the original sample type.
+	 * @return the value of the sample in the range [min, max].
+	 */
+	private long fitRange(long l, long min, long max) {
+		if(l < min || l > max) {
+			if(lossless) {
+				throw new LackOfPrecisionError("Pixel out of range");
+			}
+			return l < min ? min : max;
+		}
+		return l;
+	}
+
 	/**
 	 * Cast an array of elements represented in byte[] to int[], long[] or float[].
 	 * @param b is the array that will be cast 
@@ -506,7 +621,7 @@ public class TypeConverter <T> {
 				break;
 			case Geometry.U_BYTE:
 				for(int i=0;i<line.length;i++) {
-					line[i] = buffer.get();
+					line[i] = buffer.get() & 0xff;
 				}
 				break;
 			case Geometry.U_SHORT:
@@ -577,7 +692,7 @@ public class TypeConverter <T> {
 				break;
 			case Geometry.U_BYTE:
 				for(int i=0;i<longSamples.length;i++) {
-					longSamples[i] = buffer.get();
+					longSamples[i] = buffer.get() & 0xff;
 				}
 				break;
 			case Geometry.U_SHORT:
@@ -642,7 +757,7 @@ public class TypeConverter <T> {
 				break;
 			case Geometry.U_BYTE:
 				for(int i=0;i<imageSamples.length;i++) {
-					imageSamples[i] = buffer.get();
+					imageSamples[i] = buffer.get() & 0xff;
 				}
 				break;
 			case Geometry.U_SHORT:
@@ -697,4 +812,167 @@ public class TypeConverter <T> {
 
 	}
 
+	/**
+	 * Return the byte order of the original type of pixels.
+	 * @return the byte order used to decode and encode the samples.
+	 */
+	public ByteOrder getByteOrder() {
+		return byteOrder;
+	}
+
+	/**
+	 * Allocate an array of the desired type.
+	 * @param length is the number of elements of the array.
+	 * @return a new int[], long[] or float[] with length elements.
+	 */
+	@SuppressWarnings("unchecked")
+	public T newArray(int length) {
+		switch(type) {
+		case INT_ARRAY:
+			return (T) new int[length];
+		case LONG_ARRAY:
+			return (T) new long[length];
+		case FLOAT_ARRAY:
+			return (T) new float[length];
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Cast elements stored in a ByteBuffer straight to int[], long[] or float[], without copying them
+	 * to an intermediate byte[]. Samples are read with absolute gets, so the position of buffer is not
+	 * modified, and with the byte order of buffer, that has to be set to {@link #getByteOrder()}.
+	 * The conversion follows the same rules than {@link #bytetoT(byte[])}.
+	 * @param buffer is the buffer that contains the samples in the original sample type.
+	 * @param position is the position (in bytes) of the first sample in buffer.
+	 * @param stride is the distance (in bytes) between consecutive samples in buffer.
+	 * @param dst is the array where samples will be stored.
+	 * @param dstOffset is the position of dst where the first sample will be stored.
+	 * @param count is the number of samples to cast.
+	 */
+	public void bytetoT(ByteBuffer buffer, int position, int stride, T dst, int dstOffset, int count) {
+		final int sampleType = geo[Geometry.SAMPLE_TYPE];
+		final int end = dstOffset + count;
+
+		switch(type) {
+		case INT_ARRAY:
+			int[] line = (int[]) dst;
+
+			switch(sampleType){
+			case Geometry.BOOLEAN:
+				for(int i=dstOffset;i<end;i++, position+=stride) {
+					line[i] = buffer.get(position) == 0 ? 0 : 1;
+				}
+				break;
+			case Geometry.U_BYTE:
+				for(int i=dstOffset;i<end;i++, position+=stride) {
+					line[i] = buffer.get(position) & 0xff;
+				}
+				break;
+			case Geometry.U_SHORT:
+				for(int i=dstOffset;i<end;i++, position+=stride) {
+					line[i] = buffer.getChar(position) & 0xffff;
+				}
+				break;
+			case Geometry.SHORT:
+				for(int i=dstOffset;i<end;i++, position+=stride) {
+					line[i] = buffer.getShort(position);
+				}
+				break;
+			case Geometry.INT:
+				for(int i=dstOffset;i<end;i++, position+=stride) {
+					line[i] = buffer.getInt(position);
+				}
+				break;
+			default:
+				for(int i=dstOffset;i<end;i++, position+=stride) {
+					line[i] = (int) getSample(buffer, position, sampleType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+				}
+				break;
+			}
+			break;
+
+		case LONG_ARRAY:
+			long[] longSamples = (long[]) dst;
+			for(int i=dstOffset;i<end;i++, position+=stride) {
+				longSamples[i] = getSample(buffer, position, sampleType, Long.MIN_VALUE, Long.MAX_VALUE);
+			}
+			break;
+
+		case FLOAT_ARRAY:
+			float[] imageSamples = (float[]) dst;
+			for(int i=dstOffset;i<end;i++, position+=stride) {
+				switch(sampleType) {
+				case Geometry.FLOAT:
+					imageSamples[i] = buffer.getFloat(position);
+					break;
+				case Geometry.DOUBLE:
+					double d = buffer.getDouble(position);
+					if(d < -Float.MAX_VALUE || d > Float.MAX_VALUE) {
+						throw new LackOfPrecisionError("Pixel out of range");
+					}
+					if(!fitsInFloat(d) && lossless) {
+						throw new LackOfPrecisionError("Lack of precision with one pixel");
+					}
+					imageSamples[i] = (float) d;
+					break;
+				default:
+					imageSamples[i] = getSample(buffer, position, sampleType, Long.MIN_VALUE, Long.MAX_VALUE);
+					break;
+				}
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Read one sample of the buffer as an integer number.
+	 * @param buffer is the buffer that contains the sample.
+	 * @param position is the position (in bytes) of the sample in buffer.
+	 * @param sampleType is the original sample type.
+	 * @param min is the lowest value accepted.
+	 * @param max is the largest value accepted.
+	 * @return the value of the sample.
+	 */
+	private long getSample(ByteBuffer buffer, int position, int sampleType, long min, long max) {
+		long l;
+		switch(sampleType) {
+		case Geometry.BOOLEAN:
+			return buffer.get(position) == 0 ? 0 : 1;
+		case Geometry.U_BYTE:
+			return buffer.get(position) & 0xff;
+		case Geometry.U_SHORT:
+			return buffer.getChar(position) & 0xffff;
+		case Geometry.SHORT:
+			return buffer.getShort(position);
+		case Geometry.INT:
+			return buffer.getInt(position);
+		case Geometry.LONG:
+			l = buffer.getLong(position);
+			if(l < min || l > max) {
+				throw new LackOfPrecisionError("Pixel out of range");
+			}
+			return l;
+		case Geometry.FLOAT:
+			float f = buffer.getFloat(position);
+			if(f < min || f > max) {
+				throw new LackOfPrecisionError("Pixel out of range");
+			}
+			if(!isInteger(f) && lossless) {
+				throw new LackOfPrecisionError("Lack of precision with one pixel");
+			}
+			return (long) f;
+		default:
+			double d = buffer.getDouble(position);
+			if(d < min || d > max) {
+				throw new LackOfPrecisionError("Pixel out of range");
+			}
+			if(!isInteger(d) && lossless) {
+				throw new LackOfPrecisionError("Lack of precision with one pixel");
+			}
+			return (long) d;
+		}
+	}
+
 }
@@ -78,6 +78,24 @@ public class IntegerMath {
 		return counter;
 	}
 
+	/**
+	 * Returns the truncated base 2 logarithm of the quotient of two integers,
+	 * without dividing them. It is the largest k such that divisor * 2^k is not
+	 * greater than dividend, or 0 when the quotient is smaller than 2, like
+	 * <code>log2(dividend / divisor)</code>.
+	 * @param dividend the dividend of the quotient
+	 * @param divisor a strictly positive divisor of the quotient
+	 * @return the truncated base 2 logarithm of the quotient
+	 */
+	public static int log2Quotient(int dividend, int divisor) {
+		if (dividend < divisor << 1) {
+			return 0;
+		}
+		int k = Integer.numberOfLeadingZeros(divisor) - Integer.numberOfLeadingZeros(dividend);
+
+		return ((long) divisor << k) > dividend ? k - 1 : k;
+	}
+
 
 	/**
 	 * Returns the reverse of a two complement number.
@@ -27,21 +27,33 @@ import java.io.EOFException;
 
 /**
  * This Class implements a FilterInputStream for reading from the output one bit at a time.
+ * Bits are read most significant bit first. The input is read in bulk into an internal
+ * buffer, and the next bits are kept in a 64-bit window that is refilled from the buffer
+ * up to 8 bytes at a time.
  */
 public class BitInputStream extends FilterInputStream {
 
 	private static final int BITS_PER_BYTE = 8;
 
-	private static final int bmask[] = {
-		0x00, 0x01, 0x03, 0x07, 0x0f, 0x1f, 0x3f, 0x7f, 0xff,
-		0x1ff,0x3ff,0x7ff,0xfff,0x1fff,0x3fff,0x7fff,0xffff,
-		0x1ffff,0x3ffff,0x7ffff,0xfffff,0x1fffff,0x3fffff,
-		0x7fffff,0xffffff,0x1ffffff,0x3ffffff,0x7ffffff,
-		0xfffffff,0x1fffffff,0x3fffffff,0x7fffffff,0xffffffff
-	};
+	private static final int WINDOW_BITS = 64;
 
-	private int buffer = 0;
-	private int bitCount = 0;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The next bits of the stream, aligned to the most significant bit. Only the
+	 * count most significant bits are valid, the rest are zeros.
+	 */
+	private long window = 0;
+	private int count = 0;
+
+	private final byte[] bytes = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+
+	/**
+	 * Whether the end of the input stream has been reached.
+	 */
+	private boolean endOfStream = false;
 
 
 	/**
@@ -70,33 +82,119 @@ public class BitInputStream extends FilterInputStream {
 		if (howManyBits > 32 || howManyBits < 0) {
 			throw new RuntimeException("BitInputStream can only return from 0 to 32 bits.");
 		}
+		if (howManyBits == 0) {
+			return 0;
+		}
+		if (count < howManyBits) {
+			refill();
+			if (count < howManyBits) {
+				throw new EOFException();
+			}
+		}
 
-		int retval = 0;
+		int retval = (int) (window >>> (WINDOW_BITS - howManyBits));
+		window <<= howManyBits;
+		count -= howManyBits;
+		return retval;
+	}
 
-		while (howManyBits > bitCount) {
-			retval |= buffer << (howManyBits - bitCount);
-			howManyBits -= bitCount;
 
-			buffer = in.read();
-			if (buffer == -1) {
-				throw new EOFException();
-			}
+	/**
+	 * Returns the next bits of the stream without consuming them. Bits past
+	 * the end of the stream are returned as zeros.
+	 *
+	 * @param howManyBits is the number of bits to return (0-32).
+	 *
+	 * @return the next <code>howManyBits</code> bits as the rightmost bits
+	 * of the returned value.
+	 *
+	 * @throws IOException if the input stream can not be read.
+	 */
+	public int peek(int howManyBits) throws IOException {
 
-			bitCount = BITS_PER_BYTE;
+		if (howManyBits > 32 || howManyBits < 0) {
+			throw new RuntimeException("BitInputStream can only return from 0 to 32 bits.");
+		}
+		if (howManyBits == 0) {
+			return 0;
+		}
+		if (count < howManyBits) {
+			refill();
 		}
+		return (int) (window >>> (WINDOW_BITS - howManyBits));
+	}
+
+
+	/**
+	 * Consumes the given number of bits, usually after looking at them with
+	 * <code>peek</code>.
+	 *
+	 * @param howManyBits is the number of bits to skip.
+	 *
+	 * @throws IOException if there are not enough bits left.
+	 */
+	public void skip(int howManyBits) throws IOException {
 
-		if (howManyBits > 0) {
-			retval |= buffer >>> (bitCount - howManyBits);
-			buffer &= bmask[bitCount - howManyBits];
-			bitCount -= howManyBits;
+		if (howManyBits < 0) {
+			throw new RuntimeException("BitInputStream can not skip a negative number of bits.");
+		}
+		while (howManyBits > count) {
+			howManyBits -= count;
+			window = 0;
+			count = 0;
+			refill();
+			if (count == 0) {
+				throw new EOFException();
+			}
 		}
+		// a shift by 64 would leave the window unchanged
+		window = howManyBits == WINDOW_BITS ? 0 : window << howManyBits;
+		count -= howManyBits;
+	}
 
-		return retval;
+
+	/**
+	 * Reads a unary codeword: a run of zeros ended by a one. The run is
+	 * counted a whole window at a time. If <code>limit</code> zeros are found
+	 * the reading stops before the ending one, and <code>limit</code> is
+	 * returned.
+	 *
+	 * @param limit is the maximum number of zeros to read (non-negative).
+	 *
+	 * @return the number of zeros read. The ending one, if read, is not
+	 * counted.
+	 *
+	 * @throws IOException if the stream ends before the codeword.
+	 */
+	public int readUnary(int limit) throws IOException {
+
+		int zeros = 0;
+
+		while (zeros < limit) {
+			if (count == 0) {
+				refill();
+				if (count == 0) {
+					throw new EOFException();
+				}
+			}
+			// bits past count are zeros, so a leading one is always valid
+			int leading = Long.numberOfLeadingZeros(window);
+			if (leading < count && zeros + leading < limit) {
+				window = leading == WINDOW_BITS - 1 ? 0 : window << (leading + 1);
+				count -= leading + 1;
+				return zeros + leading;
+			}
+			int run = Math.min(Math.min(leading, count), limit - zeros);
+			window = run == WINDOW_BITS ? 0 : window << run;
+			count -= run;
+			zeros += run;
+		}
+		return limit;
 	}
 
 
 	public int read() throws IOException {
-		return read(8);
+		return read(BITS_PER_BYTE);
 	}
 
 
@@ -121,4 +219,113 @@ public class BitInputStream extends FilterInputStream {
 		return read(values, 0, values.length);
 	}
 
+
+	/**
+	 * Skips whole bytes of the stream, counted from the next bit.
+	 *
+	 * @param n is the number of bytes to skip.
+	 *
+	 * @return the number of bytes skipped.
+	 *
+	 * @throws IOException if the input stream can not be read.
+	 */
+	public long skip(long n) throws IOException {
+
+		long skipped = 0;
+		while (skipped < n) {
+			if (count < BITS_PER_BYTE) {
+				refill();
+				if (count < BITS_PER_BYTE) {
+					break;
+				}
+			}
+			window <<= BITS_PER_BYTE;
+			count -= BITS_PER_BYTE;
+			skipped++;
+		}
+		return skipped;
+	}
+
+
+	/**
+	 * Returns an estimate of the number of whole bytes that can be read
+	 * without blocking.
+	 *
+	 * @return the bytes available in the window, the buffer and the input
+	 * stream.
+	 *
+	 * @throws IOException if the input stream fails.
+	 */
+	public int available() throws IOException {
+		return count / BITS_PER_BYTE + (limit - position) + (endOfStream ? 0 : in.available());
+	}
+
+
+	/**
+	 * Marks are not supported, since the bits are read ahead of the input
+	 * stream.
+	 *
+	 * @return false
+	 */
+	public boolean markSupported() {
+		return false;
+	}
+
+
+	/**
+	 * Fills the window with as many whole bytes as fit in it, reading the
+	 * input stream when the buffer runs out. Fewer bytes are taken only at
+	 * the end of the stream.
+	 *
+	 * @throws IOException if the input stream can not be read.
+	 */
+	private void refill() throws IOException {
+
+		if (limit - position < 8 && !endOfStream) {
+			readBytes();
+		}
+		if (limit - position >= 8) {
+			long next = ((bytes[position] & 0xffL) << 56)
+				| ((bytes[position + 1] & 0xffL) << 48)
+				| ((bytes[position + 2] & 0xffL) << 40)
+				| ((bytes[position + 3] & 0xffL) << 32)
+				| ((bytes[position + 4] & 0xffL) << 24)
+				| ((bytes[position + 5] & 0xffL) << 16)
+				| ((bytes[position + 6] & 0xffL) << 8)
+				| (bytes[position + 7] & 0xffL);
+			int taken = (WINDOW_BITS - count) / BITS_PER_BYTE;
+			// the bits of the byte that does not fit are cleared
+			window |= (next >>> count) & (-1L << (WINDOW_BITS - count - taken * BITS_PER_BYTE));
+			position += taken;
+			count += taken * BITS_PER_BYTE;
+		} else {
+			while (count <= WINDOW_BITS - BITS_PER_BYTE && position < limit) {
+				window |= (bytes[position++] & 0xffL) << (WINDOW_BITS - BITS_PER_BYTE - count);
+				count += BITS_PER_BYTE;
+			}
+		}
+	}
+
+
+	/**
+	 * Moves the bytes left in the buffer to its beginning and reads the input
+	 * stream until there are at least 8 bytes or the stream ends.
+	 *
+	 * @throws IOException if the input stream can not be read.
+	 */
+	private void readBytes() throws IOException {
+
+		limit -= position;
+		System.arraycopy(bytes, position, bytes, 0, limit);
+		position = 0;
+		while (limit < 8) {
+			int read = in.read(bytes, limit, BUFFER_SIZE - limit);
+			if (read < 0) {
+				endOfStream = true;
+				break;
+			}
+			limit += read;
+		}
+	}
+
 }
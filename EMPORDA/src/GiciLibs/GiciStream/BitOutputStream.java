@@ -26,21 +26,32 @@ import java.io.IOException;
 
 /**
  * This Class implements a FilterOutputStream for writing to the output one bit at a time.
+ * Bits are written most significant bit first. They are gathered in a 64-bit register, that
+ * is stored 8 bytes at a time in an internal buffer, and the buffer is written to the output
+ * in bulk when it is full or the stream is flushed.
  */
 public class BitOutputStream extends FilterOutputStream {
 
 	private static final int BITS_PER_BYTE = 8;
 
-	private static final int bmask[] = {
-		0x00, 0x01, 0x03, 0x07, 0x0f, 0x1f, 0x3f, 0x7f, 0xff,
-		0x1ff,0x3ff,0x7ff,0xfff,0x1fff,0x3fff,0x7fff,0xffff,
-		0x1ffff,0x3ffff,0x7ffff,0xfffff,0x1fffff,0x3fffff,
-		0x7fffff,0xffffff,0x1ffffff,0x3ffffff,0x7ffffff,
-		0xfffffff,0x1fffffff,0x3fffffff,0x7fffffff,0xffffffff
-	};
+	private static final int REGISTER_BITS = 64;
 
-	private int buffer = 0;
-	private int bitsToGo = BITS_PER_BYTE;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The last bits written, that have not been stored in bytes yet. Only the
+	 * count least significant bits are valid.
+	 */
+	private long register = 0;
+	private int count = 0;
+
+	private final byte[] bytes = new byte[BUFFER_SIZE];
+	private int position = 0;
+
+	/**
+	 * Number of bytes given to the output stream.
+	 */
+	private long bytesWritten = 0;
 
 
 	/**
@@ -56,18 +67,22 @@ public class BitOutputStream extends FilterOutputStream {
 	/**
 	 * Flushes bits not yet written. Either this function or
 	 * <code>close</code> must be called to ensure that all bits will be
-	 * written.
+	 * written. The last byte is completed with zeros.
 	 *
 	 * @throws IOException if there's a problem writing bits.
 	 */
 	public void flush() throws IOException {
 
-		if (bitsToGo != BITS_PER_BYTE) {
-			out.write(buffer << bitsToGo);
-			buffer = 0;
-			bitsToGo = BITS_PER_BYTE;
+		while (count >= BITS_PER_BYTE) {
+			count -= BITS_PER_BYTE;
+			putByte((int) (register >>> count));
 		}
-
+		if (count > 0) {
+			putByte((int) (register << (BITS_PER_BYTE - count)));
+			count = 0;
+		}
+		register = 0;
+		writeBytes();
 		out.flush();
 	}
 
@@ -98,28 +113,55 @@ public class BitOutputStream extends FilterOutputStream {
 		if (howManyBits > 32 || howManyBits < 0) {
 			throw new RuntimeException("BitInputStream can only write from 0 to 32 bits.");
 		}
+		writeLong(howManyBits, value & 0xffffffffL);
+	}
 
-		value &= bmask[howManyBits]; // only right most bits valid
 
-		while (howManyBits >= bitsToGo) {
-			buffer = (buffer << bitsToGo) | (value >>> (howManyBits - bitsToGo));
-			out.write(buffer);
+	/**
+	 * Write specified number of bits from a long value to the stream, so that
+	 * a whole codeword can be written at once.
+	 *
+	 * @param howManyBits is number of bits to write (0-64).
+	 * @param value is the source of bits. Rightmost bits are written.
+	 *
+	 * @throws IOException if there's an I/O problem writing bits
+	 */
+	public void writeLong(int howManyBits, long value) throws IOException {
 
-			value &= bmask[howManyBits - bitsToGo];
-			howManyBits -= bitsToGo;
-			bitsToGo = BITS_PER_BYTE;
-			buffer = 0;
+		if (howManyBits > REGISTER_BITS || howManyBits < 0) {
+			throw new RuntimeException("BitOutputStream can only write from 0 to 64 bits.");
 		}
 
-		if (howManyBits > 0) {
-			buffer = (buffer << howManyBits) | value;
-			bitsToGo -= howManyBits;
+		// only right most bits valid
+		long bits = howManyBits == REGISTER_BITS ? value : value & ((1L << howManyBits) - 1);
+		int free = REGISTER_BITS - count;
+
+		if (howManyBits < free) {
+			register = (register << howManyBits) | bits;
+			count += howManyBits;
+			return;
 		}
+		// the register is completed with the first bits and stored
+		int rest = howManyBits - free;
+		putLong((register << free) | (bits >>> rest));
+		register = bits & ((1L << rest) - 1);
+		count = rest;
+	}
+
+
+	/**
+	 * Returns the number of bits written to the stream, including the bits
+	 * added by <code>flush</code> to complete the last byte.
+	 *
+	 * @return the number of bits written
+	 */
+	public long getBitsWritten() {
+		return (bytesWritten + position) * BITS_PER_BYTE + count;
 	}
 
 
 	public void write(int value) throws IOException {
-		write(value, 8);
+		write(BITS_PER_BYTE, value);
 	}
 
 
@@ -134,4 +176,56 @@ public class BitOutputStream extends FilterOutputStream {
 		write(values, 0, values.length);
 	}
 
+
+	/**
+	 * Stores the 8 bytes of a completed register in the buffer.
+	 *
+	 * @param bits are the 64 bits of the register
+	 *
+	 * @throws IOException if the buffer is full and can not be written
+	 */
+	private void putLong(long bits) throws IOException {
+		if (position + 8 > BUFFER_SIZE) {
+			writeBytes();
+		}
+		bytes[position] = (byte) (bits >>> 56);
+		bytes[position + 1] = (byte) (bits >>> 48);
+		bytes[position + 2] = (byte) (bits >>> 40);
+		bytes[position + 3] = (byte) (bits >>> 32);
+		bytes[position + 4] = (byte) (bits >>> 24);
+		bytes[position + 5] = (byte) (bits >>> 16);
+		bytes[position + 6] = (byte) (bits >>> 8);
+		bytes[position + 7] = (byte) bits;
+		position += 8;
+	}
+
+
+	/**
+	 * Stores a byte in the buffer.
+	 *
+	 * @param b is the byte, in the 8 rightmost bits
+	 *
+	 * @throws IOException if the buffer is full and can not be written
+	 */
+	private void putByte(int b) throws IOException {
+		if (position == BUFFER_SIZE) {
+			writeBytes();
+		}
+		bytes[position++] = (byte) b;
+	}
+
+
+	/**
+	 * Writes the bytes of the buffer to the output stream.
+	 *
+	 * @throws IOException if the bytes can not be written
+	 */
+	private void writeBytes() throws IOException {
+		if (position > 0) {
+			out.write(bytes, 0, position);
+			bytesWritten += position;
+			position = 0;
+		}
+	}
+
 }
@@ -0,0 +1,603 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+import GiciMath.IntegerMath;
+import GiciException.ParameterException;
+
+/**
+ * Common part of the predictors of the Recommended Standard MHDC-123 White Book.
+ * It keeps the weight vectors and does the prediction, the weight update and the
+ * residual mapping. The subclasses compute the local sum and the local difference
+ * vector for one combination of prediction mode and local sum mode, so those
+ * modes are not checked for every sample.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public abstract class AbstractPredictor implements Predictor {
+	/**
+	 * These variables are used as index for the arrays used to store the state of the
+	 * predictor in every step of the compression
+	 */
+	private final int N = 0;
+	private final int W = 1;
+	private final int NW = 2;
+
+	/**
+	 * These are the arrays that maintain the state of the predictor in every step of the
+	 * compression process
+	 */
+	private long[][] weightVector;
+	protected long[][] diffVector;
+	private int[][] initializationTable;
+	protected int[] vectorsSize;
+	private long totalTime = 0;
+
+	/**
+	 * Ring buffer with the central local differences of the last
+	 * numberPredictionBands + 1 bands. In BSQ order every element is the plane of a band,
+	 * in BI order it is the current line of a band. The central local difference of a
+	 * sample is computed once, when its band is coded, and read from here by the
+	 * following bands.
+	 */
+	private final int[][] differencePlanes;
+
+	/**
+	 * Position in the ring buffer of the line y of a band, it is 0 in BI order.
+	 */
+	private final int planeStride;
+
+	/**
+	 * For every band z, the element of the ring buffer that contains its central
+	 * local differences, and the elements of the bands z - 1, z - 2, ... used in the
+	 * prediction of band z (in this order).
+	 */
+	private final int[][] bandPlanes;
+	protected final int[][][] previousPlanes;
+
+	/**
+	 * The parameters set by the user that are read for every sample. They are
+	 * copied here when the predictor is built, so the hot path only reads
+	 * final primitive fields.
+	 */
+	protected final int width;
+	private final int numberPredictionBands;
+	private final int predictionMode;
+	private final int registerSize;
+	private final int weightComponentResolution;
+	private final int weightInitMethod;
+	private final int weightInitResolution;
+	private final int dynamicRange;
+	private final int tinc;
+	private final int vmin;
+	private final int vmax;
+
+	/**
+	 * The range of the samples and the range of the weight components
+	 */
+	private final int sampleMin;
+	private final int sampleMax;
+	private final int sampleMid;
+	private final int weightMin;
+	private final int weightMax;
+
+	/**
+	 * Per-sample scratch state: the local sum of the last sample processed by
+	 * calculateLocalDifference, and the scaled predicted sample value and the
+	 * predicted sample value of the last sample processed by calculatePrediction.
+	 */
+	protected int localSum;
+	private int scaledPrediction;
+	private int prediction;
+	private boolean time;
+
+	/**
+	 * Kernel for the dot product and the update of the weight vector
+	 */
+	private final WeightKernel weightKernel;
+
+	/**
+	 * Constructor of AbstractPredictor. It receives the parameters needed for the 
+	 * headers
+	 *
+	 * @param parameters all the information about the compression process
+	 * @param time indicates if the time used by the predictor must be shown
+	 * 
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	protected AbstractPredictor(Parameters parameters, boolean time) throws ParameterException {
+
+		int geo[] = parameters.getImageGeometry();
+
+		width = geo[CONS.WIDTH];
+		numberPredictionBands = parameters.numberPredictionBands;
+		predictionMode = parameters.predictionMode;
+		registerSize = parameters.registerSize;
+		weightComponentResolution = parameters.weightComponentResolution;
+		weightInitMethod = parameters.weightInitMethod;
+		weightInitResolution = parameters.weightInitResolution;
+		dynamicRange = parameters.dynamicRange;
+		tinc = parameters.tinc;
+		vmin = parameters.vmin;
+		vmax = parameters.vmax;
+
+		weightMin = -1 << weightComponentResolution + 2;
+		weightMax = (1 << weightComponentResolution + 2) - 1;
+		
+		if (geo[CONS.TYPE] != 3) {
+			sampleMin = 0;
+			sampleMax = (1 << dynamicRange) - 1;
+			sampleMid = 1 << (dynamicRange - 1);
+		
+		} else { 
+			sampleMin = -1 << dynamicRange - 1;
+			sampleMax = (1 << dynamicRange - 1) - 1;			
+			sampleMid = 0;
+		}
+		weightVector = new long[geo[CONS.BANDS]][];
+		diffVector = new long[geo[CONS.BANDS]][];
+		vectorsSize = new int[geo[CONS.BANDS]];
+		initializationTable = parameters.getWeightInitTable();
+		this.time = time;
+		weightKernel = WeightKernelFactory.getWeightKernel();
+
+		if (parameters.sampleEncodingOrder == CONS.BAND_SEQUENTIAL) {
+			planeStride = width;
+			differencePlanes = new int[numberPredictionBands + 1][geo[CONS.HEIGHT] * width];
+		} else {
+			planeStride = 0;
+			differencePlanes = new int[numberPredictionBands + 1][width];
+		}
+		bandPlanes = new int[geo[CONS.BANDS]][];
+		previousPlanes = new int[geo[CONS.BANDS]][][];
+	}
+
+	/**
+	 * Make the initializations needed before compression or decompression.
+	 * 
+	 * @param z is the number of the band
+	 */
+	private void init(int z) {
+		vectorsSize[z] = numberPredictionBands < z ? numberPredictionBands : z;
+		if (predictionMode == CONS.FULL_PRED_MODE) {
+			vectorsSize[z] += 3;
+		}	
+		diffVector[z] = new long[vectorsSize[z]];
+		weightVector[z] = new long[vectorsSize[z]];
+
+		bandPlanes[z] = differencePlanes[z % (numberPredictionBands + 1)];
+		int previousBands = numberPredictionBands < z ? numberPredictionBands : z;
+		previousPlanes[z] = new int[previousBands][];
+		for (int i = 0; i < previousBands; i++) {
+			previousPlanes[z][i] = bandPlanes[z - i - 1];
+		}
+
+		//weight initialization
+		if (weightInitMethod == CONS.DEFAULT_WEIGHT_INIT) {
+			// default weight initialization
+			int i = 0;
+			if (predictionMode == CONS.FULL_PRED_MODE) {
+				weightVector[z][N] = 0;
+				weightVector[z][W] = 0;
+				weightVector[z][NW] = 0;
+				i += 3;
+			}
+			if (i < vectorsSize[z]) {
+				weightVector[z][i] = 7*(1 << weightComponentResolution - 3);
+				i++;
+			}
+			for (; i < vectorsSize[z]; i++) {
+				weightVector[z][i] = weightVector[z][i - 1] >> 3;
+			}
+
+		} else {
+			//custom weight initialization
+			int exponent = weightComponentResolution + 2 - weightInitResolution;
+			int constantSum = exponent < 0 ? 0 : (1 << exponent) - 1;
+			int constantProd = 1 << exponent + 1;
+			for (int i = 0; i < vectorsSize[z]; i++) {
+				weightVector[z][i] = constantProd * initializationTable[z][i] + constantSum;
+			}
+		}
+	}
+
+	/**
+	 * Return the neighbor oriented sum for the sample s[y][x] of the band s.
+	 * x and y cannot both be 0
+	 * 
+	 * @param s is a band of the image
+	 * @param y is the row of the sample
+	 * @param x is the column of the sample
+	 * @param lineOffset is the position of line y in s
+	 * @param width is the width of the image
+	 * @return the neighbor oriented sum for the sample s[y][x]
+	 * of the band s.
+	 */
+	protected static int getNeighborOrientedSum(int s[][], int y, int x, int lineOffset, int width) {
+		if (y > 0 && x > 0 && x < width - 1) {
+			return s[lineOffset][x - 1] + s[lineOffset - 1][x - 1] + s[lineOffset - 1][x] + s[lineOffset - 1][x + 1];
+		} else if (y == 0 && x > 0) {
+			return s[lineOffset][x - 1] << 2;
+		} else if (y > 0 && x == 0) {
+			return (s[lineOffset - 1][x] + s[lineOffset - 1][x + 1]) << 1;
+		} else {
+			return s[lineOffset][x - 1] + s[lineOffset - 1][x - 1] + (s[lineOffset - 1][x] << 1);
+		}
+	}
+
+	/**
+	 * Return the column oriented sum for the sample s[y][x] of the band s.
+	 * x and y cannot both be 0
+	 * 
+	 * @param s is a band of the image
+	 * @param y is the row of the sample
+	 * @param x is the column of the sample
+	 * @param lineOffset is the position of line y in s
+	 * @return the column oriented sum for the sample s[y][x]
+	 * of the band s.
+	 */
+	protected static int getColumnOrientedSum(int s[][], int y, int x, int lineOffset) {
+		if (y > 0) {
+			return s[lineOffset - 1][x] << 2;
+		} else {
+			return s[lineOffset][x - 1] << 2;
+		}
+	}
+
+	/**
+	 * Return the local sum for the sample s[y][x] of the band s.
+	 * x and y cannot both be 0
+	 * 
+	 * @param s is a band of the image
+	 * @param y is the row of the sample
+	 * @param x is the column of the sample
+	 * @param lineOffset is the position of line y in s
+	 * @return the local sum for the sample s[y][x] of the band s
+	 */
+	protected abstract int getLocalSum(int s[][], int y, int x, int lineOffset);
+
+	/**
+	 * Calculates the local sum and the local difference vector for the sample s[z][y][x].
+	 * The local sum must be left in the field localSum and the local difference
+	 * vector in diffVector[z]. The central local differences of the previous bands
+	 * are read from previousPlanes[z][i][position].
+	 * x and y cannot both be 0
+	 * 
+	 * @param s is the image
+	 * @param z is the band of the sample
+	 * @param y is the row of the sample
+	 * @param x is the column of the sample
+	 * @param bandOffset is the position of band z in s
+	 * @param lineOffset is the position of line y in s
+	 * @param position is the position of the sample in the ring buffer planes
+	 */
+	protected abstract void calculateLocalDifference(int s[][][], int z, int y, int x, int bandOffset, int lineOffset, int position);
+
+	/**
+	 * Calculates the local sum and the local difference vector for the interior
+	 * sample s[z][y][x], without checking the borders of the image.
+	 * y must be greater than 0 and x must be between 1 and width - 2
+	 * 
+	 * @param current is the line y of band z
+	 * @param above is the line y - 1 of band z
+	 * @param z is the band of the sample
+	 * @param x is the column of the sample
+	 * @param position is the position of the sample in the ring buffer planes
+	 */
+	protected abstract void calculateInteriorLocalDifference(int current[], int above[], int z, int x, int position);
+
+	/**
+	 * Calculates the prediction values. The scaled predicted sample value and the
+	 * predicted sample value are left in the fields scaledPrediction and prediction.
+	 * 
+	 * @param s is the image
+	 * @param z is the band of the sample
+	 * @param y is the row of the sample
+	 * @param x is the column of the sample
+	 * @param bandOffset is the position of band z in s
+	 * @param lineOffset is the position of line y in s
+	 */
+	private void calculatePrediction(int[][][] s, int z, int y, int x, int bandOffset, int lineOffset) {
+		int s_scaled;
+		
+		if (x + y == 0) {
+			
+			if(z == 0 || numberPredictionBands == 0) {
+				s_scaled = sampleMid << 1;
+			} else {
+				s_scaled = s[bandOffset - 1][lineOffset][x] << 1;
+			}
+				
+			scaledPrediction = s_scaled;
+			prediction = s_scaled >> 1;
+		} else {						
+			calculateWeightedPrediction(z);
+		}
+	}
+
+	/**
+	 * Calculates the prediction values from the local sum and the local difference
+	 * vector of the sample. The scaled predicted sample value and the predicted
+	 * sample value are left in the fields scaledPrediction and prediction.
+	 * 
+	 * @param z is the band of the sample
+	 */
+	private void calculateWeightedPrediction(int z) {
+		long d_aprox = weightKernel.dotProduct(weightVector[z], diffVector[z], vectorsSize[z]);
+		/***************************************************************/
+		/* this code is very sensitive to changes, it probably can be optimized, but be careful */
+		long tmpValue = (localSum - (sampleMid << 2));
+		boolean sgn = tmpValue < 0;
+		tmpValue = Math.abs(tmpValue) << weightComponentResolution;
+		tmpValue = sgn ? -tmpValue : tmpValue;
+		long tmp = IntegerMath.mod_R(d_aprox + tmpValue, registerSize);
+
+		/*****************************************************************/
+		
+		tmp >>= weightComponentResolution + 1;
+		tmp += (sampleMid << 1) + 1;
+		int s_scaled = IntegerMath.clip(tmp, sampleMin << 1, (sampleMax << 1) + 1);
+		scaledPrediction = s_scaled;
+		prediction = s_scaled >> 1;
+	}
+
+
+	/**
+	 * Update the weight vector.
+	 * x and y cannot both be 0 and in the reduced prediction mode
+	 * z cannot be 0.
+	 * 
+	 * @param sample is the value of the sample s[z][y][x]
+	 * @param z is the band of the sample
+	 * @param y is the row of the sample
+	 * @param x is the column of the sample
+	 * @param s_scaled is the scaled predicted sample value
+	 */
+	private void updateWeightVector(int sample, int z, int y, int x, int s_scaled) {
+		long scaled_error, scaling_exponent;
+		
+		scaled_error = (sample << 1) - s_scaled;
+		
+		long tmp = ((x + (y - 1) * width) >> tinc);
+		scaling_exponent = IntegerMath.clip(vmin + tmp, vmin, vmax);
+		scaling_exponent += dynamicRange - weightComponentResolution;
+		
+		int sign = IntegerMath.positive_sign(scaled_error);
+		weightKernel.updateWeights(weightVector[z], diffVector[z], vectorsSize[z], sign, scaling_exponent, weightMin, weightMax);
+	}
+
+	/**
+	 * Return the mapped residual of the sample s[z][y][x].
+	 * 
+	 * @param s is the sample value
+	 * @param s_aprox is the predicted sample value
+	 * @param s_scaled is the scaled predicted sample value
+	 * @return the mapped residual of the sample s[z][y][x]
+	 */
+	private int getMappedResidual(int s, int s_aprox, int s_scaled) {
+		int residual, minDifference;
+		int mappedValue = 0;
+		
+		residual = s - s_aprox;
+		minDifference = Math.min(s_aprox - sampleMin, sampleMax - s_aprox);
+		
+		if (Math.abs(residual) > minDifference) {
+			mappedValue = Math.abs(residual) + minDifference;
+		} else if (s_scaled % 2 == 0 && residual >= 0 || s_scaled % 2 != 0 && residual <= 0) {
+			mappedValue = Math.abs(residual) << 1;
+		} else {
+			mappedValue = (Math.abs(residual) << 1) - 1;
+		}
+		return mappedValue;
+	}
+
+	/**
+	 * Return the original value of the sample.
+	 * 
+	 * @param mappedResidual is the mapped residual of a sample
+	 * @param s_aprox is the predicted sample value
+	 * @param s_scaled is the scaled predicted sample value
+	 * @return the original value of the sample
+	 */
+	private int getSample(int mappedResidual, int s_aprox, int s_scaled) {
+		int minDifference, residual;
+		
+		minDifference = Math.min(s_aprox - sampleMin, sampleMax - s_aprox);
+		
+		if (mappedResidual > minDifference << 1) {
+			if (minDifference == s_aprox - sampleMin) {
+				residual = mappedResidual - minDifference;
+			} else {
+				residual = -mappedResidual + minDifference;
+			}
+		} else if (mappedResidual % 2 == 0) {
+			residual = s_scaled % 2 == 0 ? mappedResidual >> 1 : -mappedResidual >> 1;
+		} else {
+			residual = s_scaled % 2 != 0 ? mappedResidual + 1 >> 1 : -mappedResidual - 1 >> 1;
+		}
+		return residual + s_aprox;
+	}
+
+	/**
+	 * Compress the pixel of band z, line y and column x of the image s 
+	 * and return the mapped residual.
+	 * 
+	 * @param s is the image
+	 * @param z is the band of the image
+	 * @param y is the line of the image
+	 * @param x is the column of the image
+	 * @param bandOffset is the position of band z in s
+	 * @param lineOffset is the position of line y in s
+	 * @return the mapped residual
+	 */
+	public int compress(int s[][][], int z, int y, int x, int bandOffset, int lineOffset) {
+		if(y == 0 && x == 0) {
+			init(z);
+			calculatePrediction(s, z, 0, 0, bandOffset, lineOffset); 
+			return getMappedResidual(s[bandOffset][lineOffset][0], prediction, scaledPrediction);
+		}
+		long initTime = time ? System.nanoTime() : 0;
+		int sample = s[bandOffset][lineOffset][x];
+		int position = y * planeStride + x;
+		calculateLocalDifference(s, z, y, x, bandOffset, lineOffset, position);
+		calculatePrediction(s, z, y, x, bandOffset, lineOffset);
+		bandPlanes[z][position] = (sample << 2) - localSum;
+		updateWeightVector(sample, z, y, x, scaledPrediction);
+		if (time) {
+			totalTime += System.nanoTime() - initTime;
+		}
+		return getMappedResidual(sample, prediction, scaledPrediction);
+	}
+
+	/**
+	 * Decompress the pixel of band z, line y and column x of the image s 
+	 * and return it.
+	 * 
+	 * @param s is the image
+	 * @param z is the band of the image
+	 * @param y is the line of the image
+	 * @param x is the column of the image
+	 * @param bandOffset is the position of band z in s
+	 * @param lineOffset is the position of line y in s
+	 * @return the pixel value
+	 */
+	public int decompress(int s[][][], int z, int y, int x, int bandOffset, int lineOffset) {
+		if(y == 0 && x == 0) {
+			init(z);
+			calculatePrediction(s, z, 0, 0, bandOffset, lineOffset);
+			return getSample(s[bandOffset][lineOffset][0], prediction, scaledPrediction); 
+		}
+		long initTime = time ? System.nanoTime() : 0;
+		int position = y * planeStride + x;
+		calculateLocalDifference(s, z, y, x, bandOffset, lineOffset, position);
+		calculatePrediction(s, z, y, x, bandOffset, lineOffset);
+		int sample = getSample(s[bandOffset][lineOffset][x], prediction, scaledPrediction);
+		s[bandOffset][lineOffset][x] = sample;
+		bandPlanes[z][position] = (sample << 2) - localSum;
+		updateWeightVector(sample, z, y, x, scaledPrediction);
+		if (time) {
+			totalTime += System.nanoTime() - initTime;
+		}
+		return sample;
+	}	
+
+	/**
+	 * Compress the interior pixel of band z, line y and column x of the image s 
+	 * and return the mapped residual. y must be greater than 0 and x must be
+	 * between 1 and width - 2.
+	 * 
+	 * @param s is the image
+	 * @param z is the band of the image
+	 * @param y is the line of the image
+	 * @param x is the column of the image
+	 * @param bandOffset is the position of band z in s
+	 * @param lineOffset is the position of line y in s
+	 * @return the mapped residual
+	 */
+	public int compressInterior(int s[][][], int z, int y, int x, int bandOffset, int lineOffset) {
+		long initTime = time ? System.nanoTime() : 0;
+		int[] current = s[bandOffset][lineOffset];
+		int sample = current[x];
+		int position = y * planeStride + x;
+		calculateInteriorLocalDifference(current, s[bandOffset][lineOffset - 1], z, x, position);
+		calculateWeightedPrediction(z);
+		bandPlanes[z][position] = (sample << 2) - localSum;
+		updateWeightVector(sample, z, y, x, scaledPrediction);
+		if (time) {
+			totalTime += System.nanoTime() - initTime;
+		}
+		return getMappedResidual(sample, prediction, scaledPrediction);
+	}
+
+	/**
+	 * Decompress the interior pixel of band z, line y and column x of the image s 
+	 * and return it. y must be greater than 0 and x must be between 1 and width - 2.
+	 * 
+	 * @param s is the image
+	 * @param z is the band of the image
+	 * @param y is the line of the image
+	 * @param x is the column of the image
+	 * @param bandOffset is the position of band z in s
+	 * @param lineOffset is the position of line y in s
+	 * @return the pixel value
+	 */
+	public int decompressInterior(int s[][][], int z, int y, int x, int bandOffset, int lineOffset) {
+		long initTime = time ? System.nanoTime() : 0;
+		int[] current = s[bandOffset][lineOffset];
+		int position = y * planeStride + x;
+		calculateInteriorLocalDifference(current, s[bandOffset][lineOffset - 1], z, x, position);
+		calculateWeightedPrediction(z);
+		int sample = getSample(current[x], prediction, scaledPrediction);
+		current[x] = sample;
+		bandPlanes[z][position] = (sample << 2) - localSum;
+		updateWeightVector(sample, z, y, x, scaledPrediction);
+		if (time) {
+			totalTime += System.nanoTime() - initTime;
+		}
+		return sample;
+	}
+
+	/**
+	 * Computes the central local differences of band z of the image s without
+	 * predicting it. It is only valid in BSQ order.
+	 * 
+	 * @param s is the image
+	 * @param z is the band of the image
+	 * @param bandOffset is the position of band z in s
+	 */
+	public void computeLocalDifferences(int s[][][], int z, int bandOffset) {
+		int[] plane = differencePlanes[z % (numberPredictionBands + 1)];
+		int[][] band = s[bandOffset];
+		bandPlanes[z] = plane;
+		for (int y = 0; y < band.length; y++) {
+			for (int x = y == 0 ? 1 : 0; x < width; x++) {
+				plane[y * planeStride + x] = (band[y][x] << 2) - getLocalSum(band, y, x, y);
+			}
+		}
+	}
+
+	/**
+	 * Getter for weightVector
+	 * @return weightVector
+	 */
+	public long[][] getWeightVector() {
+		return weightVector;
+	}
+	
+	/**
+	 * Finishes the prediction process
+	 */
+	public void end() {
+		if(time) {
+			System.out.println("time:" + totalTime/(double)1000000);
+		}
+	}
+}
@@ -59,6 +59,11 @@ public class App {
 			System.err.println("ARGUMENTS ERROR: " + e.getMessage());
 			System.exit(-1);
 		}
+		if (parser.getOutputFile().equals(CONS.STANDARD_STREAM)) {
+			// the output is written to the standard output, so the messages
+			// are shown in the standard error
+			System.setOut(System.err);
+		}
 		if (parser.getAction() == 0) {
 			compress(parser);
 		} else {
@@ -113,6 +118,11 @@ public class App {
 			encoder.setDeltaMode(parser.getDeltaMode());
 			encoder.setSaveState(parser.getSaveState());
 			encoder.setBitCost(parser.getBitCost());
+			encoder.setThreads(parser.getThreads());
+			encoder.setPipeline(parser.getPipeline());
+			encoder.setTranspose(!parser.getNoTranspose());
+			encoder.setCacheMemory(parser.getCacheMemory());
+			encoder.setPrefetchDepth(parser.getPrefetch());
 			if(debugMode) {
 				System.out.println("debug info: writting image header");
 			}
@@ -150,6 +160,7 @@ public class App {
 		Parameters parameters = null;
 		Decoder decoder = null;
 		boolean deltaMode = parser.getDeltaMode(); // used to avoid this boolean being set
+		boolean noTranspose = parser.getNoTranspose(); // used to avoid this boolean being set
 		
 		try {
 			
@@ -158,6 +169,8 @@ public class App {
 			}
 			
 			decoder = new Decoder(inputFile, outputFile, debugMode, sampleOrder, parser.getPixelFormat(), parser.getTime());
+			decoder.setPipeline(parser.getPipeline());
+			decoder.setCacheMemory(parser.getCacheMemory());
 			
 			if (debugMode) {
 				System.out.println("debug info: reading image header and loading parameters");
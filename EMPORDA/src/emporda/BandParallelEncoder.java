@@ -0,0 +1,271 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import GiciException.ParameterException;
+
+/**
+ * Computes the mapped residuals of several bands of an image in parallel. It is
+ * used by the coder in BSQ order: the prediction of a band only depends on the
+ * original samples and on the weight vector of the band, so contiguous groups of
+ * {@link #getTaskBands()} bands are predicted by different tasks, each one with
+ * its own predictor. The coder entropy codes the residuals of every task in the
+ * original order as soon as the task finishes, which gives the same bitstream as
+ * the sequential coder.
+ * <p>
+ * At most {@link #getWindow()} tasks are in flight, each one in a slot of the
+ * window with its own predictor, so the memory used does not depend on the
+ * number of bands of the image.
+ * <p>
+ * A predictor that starts at band z needs the central local differences of the
+ * numberPredictionBands previous bands, so it computes them before predicting
+ * its first band.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class BandParallelEncoder {
+
+	/**
+	 * Minimum number of bands predicted by each task
+	 */
+	private static final int MIN_BANDS_PER_TASK = 8;
+
+	private final ForkJoinPool pool;
+	private final Predictor[] predictors;
+	private final int numberPredictionBands;
+	private final int bandsPerTask;
+	private final int width;
+	private final boolean time;
+
+	/**
+	 * Time used by all the tasks, in nanoseconds
+	 */
+	private final AtomicLong totalTime = new AtomicLong(0);
+
+	/**
+	 * Final weight vector of every band, taken from the predictor that coded it
+	 */
+	private final long[][] weightVector;
+
+	/**
+	 * Constructor of BandParallelEncoder.
+	 *
+	 * @param parameters all the information about the compression process
+	 * @param threads is the number of threads used
+	 * @param time indicates if the time used by the prediction must be shown
+	 * 
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public BandParallelEncoder(Parameters parameters, int threads, boolean time) throws ParameterException {
+		int geo[] = parameters.getImageGeometry();
+
+		numberPredictionBands = parameters.numberPredictionBands;
+		width = geo[CONS.WIDTH];
+		this.time = time;
+		bandsPerTask = getTaskBands(parameters);
+		weightVector = new long[geo[CONS.BANDS]][];
+
+		int window = getWindow(parameters, threads);
+		pool = new ForkJoinPool(Math.min(threads, window));
+		predictors = new Predictor[window];
+		for (int i = 0; i < window; i++) {
+			predictors[i] = PredictorFactory.getPredictor(parameters, false);
+		}
+	}
+
+	/**
+	 * Returns the number of bands predicted by each task.
+	 * 
+	 * @param parameters all the information about the compression process
+	 * @return the number of bands of a task
+	 */
+	private static int getTaskBands(Parameters parameters) {
+		return Math.max(parameters.numberPredictionBands, MIN_BANDS_PER_TASK);
+	}
+
+	/**
+	 * Returns the maximum number of tasks in flight for an image. The window
+	 * has one slot more than threads, so all the threads predict while the
+	 * coder entropy codes the oldest task, unless the planes of the window
+	 * would need more than a quarter of the memory of the JVM. When it has a
+	 * single slot, coding the image in parallel is useless.
+	 * 
+	 * @param parameters all the information about the compression process
+	 * @param threads is the number of threads used
+	 * @return the number of slots of the window
+	 */
+	public static int getWindow(Parameters parameters, int threads) {
+		int geo[] = parameters.getImageGeometry();
+		int bandsPerTask = getTaskBands(parameters);
+		int tasks = (geo[CONS.BANDS] + bandsPerTask - 1) / bandsPerTask;
+		int window = Math.min(threads + 1, tasks);
+		long planeBytes = 4L * geo[CONS.HEIGHT] * geo[CONS.WIDTH];
+		long maxBytes = Runtime.getRuntime().maxMemory() / 4;
+		while (window > 1 && (2L * window * bandsPerTask + parameters.numberPredictionBands) * planeBytes > maxBytes) {
+			window--;
+		}
+		return window;
+	}
+
+	/**
+	 * Returns the number of bands predicted by each task. Every task but the
+	 * last one of the image must predict this number of bands.
+	 * 
+	 * @return the number of bands of a task
+	 */
+	public int getTaskBands() {
+		return bandsPerTask;
+	}
+
+	/**
+	 * Returns the maximum number of tasks in flight.
+	 * 
+	 * @return the number of slots of the window
+	 */
+	public int getWindow() {
+		return predictors.length;
+	}
+
+	/**
+	 * Starts the computation of the mapped residuals of the bands firstBand to
+	 * firstBand + numBands - 1. The task that used the slot before must have
+	 * finished.
+	 * 
+	 * @param slot is the slot of the window used by the task
+	 * @param bands contains the bands firstBand - previousBands to firstBand + numBands - 1
+	 * of the image, in this order
+	 * @param previousBands is the number of bands before firstBand in bands, it
+	 * must be min(firstBand, numberPredictionBands)
+	 * @param firstBand is the first band predicted
+	 * @param numBands is the number of bands predicted
+	 * @param residuals is where the mapped residuals of band firstBand + i are left,
+	 * in residuals[i]
+	 * @return the task, to be given to {@link #await}
+	 */
+	public Future<Void> submit(int slot, final int[][][] bands, final int previousBands, 
+			final int firstBand, final int numBands, final int[][][] residuals) {
+
+		final Predictor predictor = predictors[slot];
+		return pool.submit(new Callable<Void>() {
+			public Void call() {
+				long initTime = time ? System.nanoTime() : 0;
+				predictBands(predictor, bands, previousBands, firstBand, numBands, residuals);
+				if (time) {
+					totalTime.addAndGet(System.nanoTime() - initTime);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Waits until a task has computed its mapped residuals.
+	 * 
+	 * @param task is the task returned by {@link #submit}
+	 * @throws IOException if the task has failed, with the exception that stopped it
+	 */
+	public void await(Future<Void> task) throws IOException {
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the prediction", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Unexpected exception ocurred "+e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * Predicts the bands firstBand to firstBand + numBands - 1 with the predictor.
+	 * 
+	 * @param predictor is the predictor used
+	 * @param bands contains the bands of the task and the previous bands
+	 * @param previousBands is the number of bands before firstBand in bands
+	 * @param firstBand is the first band predicted
+	 * @param numBands is the number of bands predicted
+	 * @param residuals is where the mapped residuals are left
+	 */
+	private void predictBands(Predictor predictor, int[][][] bands, int previousBands, 
+			int firstBand, int numBands, int[][][] residuals) {
+
+		for (int i = -previousBands; i < 0; i++) {
+			predictor.computeLocalDifferences(bands, firstBand + i, previousBands + i);
+		}
+		for (int i = 0; i < numBands; i++) {
+			int z = firstBand + i;
+			int bandOffset = previousBands + i;
+			int[][] r = residuals[i];
+			// first row
+			for (int x = 0; x < width; x++) {
+				r[0][x] = predictor.compress(bands, z, 0, x, bandOffset, 0);
+			}
+			for (int y = 1; y < r.length; y++) {
+				// first column
+				r[y][0] = predictor.compress(bands, z, y, 0, bandOffset, y);
+				// interior
+				for (int x = 1; x < width - 1; x++) {
+					r[y][x] = predictor.compressInterior(bands, z, y, x, bandOffset, y);
+				}
+				// last column
+				if (width > 1) {
+					r[y][width - 1] = predictor.compress(bands, z, y, width - 1, bandOffset, y);
+				}
+			}
+			weightVector[z] = predictor.getWeightVector()[z];
+		}
+	}
+
+	/**
+	 * Getter for weightVector
+	 * @return the final weight vector of every band
+	 */
+	public long[][] getWeightVector() {
+		return weightVector;
+	}
+
+	/**
+	 * Finishes the prediction process and stops the threads. When the time
+	 * is shown, it is the time used by all the tasks.
+	 */
+	public void end() {
+		pool.shutdown();
+		if (time) {
+			System.out.println("time:" + totalTime.get()/(double)1000000);
+		}
+	}
+}
@@ -69,4 +69,7 @@ public class CONS {
 	public static final int ENDIANESS = 4; /* byte order of pixels */
 	public static final int RGB = 5;       /* if image has header */
 
+	/* file name of the standard input or output */
+	public static final String STANDARD_STREAM = "-";
+
 }
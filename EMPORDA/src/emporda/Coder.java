@@ -40,6 +40,7 @@ import GiciFile.RawImage.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Future;
 
 
 /**
@@ -52,9 +53,9 @@ import java.util.*;
  */
 public class Coder {
 
-	private final File file;
-	private final FileOutputStream fileStream;
+	private final OutputStream outputStream;
 	private final BitOutputStream bos;
+	private boolean closeOutput = false;
 	private EntropyCoder ec;
 
 	private Parameters parameters;
@@ -78,13 +79,55 @@ public class Coder {
 	private boolean saveState = false;
 	private int bitCost = 0;
 	private boolean time;
+	private int threads = 1;
+
+	/**
+	 * Megabytes of the cache of the input image file, or 0 to use the
+	 * default of RawImage
+	 */
+	private int cacheMemory = 0;
+
+	/**
+	 * Number of blocks of the input image file read ahead, or 0 to use the
+	 * default of RawImage
+	 */
+	private int prefetchDepth = 0;
+
+	/**
+	 * When the sample order of the input file is not the encoding order, the
+	 * image is transposed to transposedFile before coding it, unless transpose
+	 * is false. inputTransformation is the transformation used to read it.
+	 */
+	private boolean transpose = true;
+	private File transposedFile = null;
+	private int[] inputTransformation;
+
+	/**
+	 * The stream the image is read from, or null. When it can not be read in
+	 * the encoding order keeping its outermost dimension, it is first copied
+	 * to spooledFile.
+	 */
+	private InputStream inputStream = null;
+	private File spooledFile = null;
+
+	/**
+	 * Pipeline between the prediction and the entropy coding. When it is
+	 * running, ring is not null and the entropy coding is done by pipelineThread.
+	 */
+	private static final int PIPELINE_CAPACITY = 1 << 16;
+	private boolean pipeline = false;
+	private ResidualRingBuffer ring = null;
+	private Thread pipelineThread = null;
+	private volatile Throwable pipelineError = null;
 	
 	/**
 	 * Constructor of Coder. It receives the name of the output file and
 	 * the parameters needed for the headers.
 	 *
-	 * @param outputFile the file where the result of the compressing will be saved
-	 * @param inputFile the file that contain the image
+	 * @param outputFile the file where the result of the compressing will be saved,
+	 * or {@link CONS#STANDARD_STREAM} to write it to the standard output
+	 * @param inputFile the file that contain the image, or {@link CONS#STANDARD_STREAM}
+	 * to read it from the standard input
 	 * @param sampleOrder is the sample order of the image in the input file.
 	 * @param parameters all the information about the compression process
 	 * @param debugMode indicates if debug information must be shown
@@ -94,11 +137,50 @@ public class Coder {
 	public Coder(String outputFile, String inputFile, int sampleOrder, final Parameters parameters, 
 			boolean debugMode, boolean time) throws IOException, ParameterException {
 		this.outputFile = outputFile;
-		this.time = time;
-		file = new File(outputFile);
-		fileStream = new FileOutputStream(file);
-		bos = new BitOutputStream( new BufferedOutputStream(fileStream));
+		if (outputFile.equals(CONS.STANDARD_STREAM)) {
+			outputStream = new FileOutputStream(FileDescriptor.out);
+		} else {
+			outputStream = new FileOutputStream(outputFile);
+			closeOutput = true;
+		}
+		bos = new BitOutputStream(outputStream);
 		this.inputFile = inputFile;
+		if (inputFile.equals(CONS.STANDARD_STREAM)) {
+			inputStream = new FileInputStream(FileDescriptor.in);
+		}
+		init(sampleOrder, parameters, debugMode, time);
+	}
+
+	/**
+	 * Constructor of Coder that reads the image from a stream and writes the
+	 * result of the compression to another one, that is flushed but not closed.
+	 *
+	 * @param outputStream the stream where the result of the compressing will be written
+	 * @param inputStream the stream that contains the image
+	 * @param sampleOrder is the sample order of the image in the input stream.
+	 * @param parameters all the information about the compression process
+	 * @param debugMode indicates if debug information must be shown
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public Coder(OutputStream outputStream, InputStream inputStream, int sampleOrder, final Parameters parameters, 
+			boolean debugMode, boolean time) throws ParameterException {
+		this.outputStream = outputStream;
+		bos = new BitOutputStream(outputStream);
+		this.inputStream = inputStream;
+		init(sampleOrder, parameters, debugMode, time);
+	}
+
+	/**
+	 * Sets the pixel order transformations and creates the predictor.
+	 *
+	 * @param sampleOrder is the sample order of the input image.
+	 * @param parameters all the information about the compression process
+	 * @param debugMode indicates if debug information must be shown
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	private void init(int sampleOrder, final Parameters parameters, boolean debugMode, boolean time) 
+			throws ParameterException {
+		this.time = time;
 		switch(sampleOrder) {
 			case 0: //BSQ
 				originalPixelOrder = OrderConverter.DIM_TRANSP_IDENTITY;
@@ -127,7 +209,7 @@ public class Coder {
 		}
 		this.parameters = parameters;
 		geo = parameters.getImageGeometry();
-		this.predictor = new Predictor(parameters, time);
+		this.predictor = PredictorFactory.getPredictor(parameters, time);
 		this.debugMode = debugMode;
 	}
 
@@ -188,9 +270,9 @@ public class Coder {
 	 * Compiles all the information needed to create the entropy coder,
 	 * and creates it.
 	 * @param verbose indicates whether to display information
-	 * @param  
+	 * @throws IOException if the entropy coder can not be created
 	 */
-	private void startCoder(boolean verbose) {
+	private void startCoder(boolean verbose) throws IOException {
 
 		if (parameters.entropyCoderType == CONS.SAMPLE_ADAPTIVE_ENCODER) {
 			try {
@@ -207,9 +289,8 @@ public class Coder {
 					bitCost,
 					outputFile
 					);
-			} catch (Exception e) {
-				e.printStackTrace();
-				System.exit(-1);
+			} catch (ParameterException e) {
+				throw new IOException(e.getMessage(), e);
 			}
 			if(verbose || debugMode) {
 				System.out.println("Starting sample adaptive coder");
@@ -239,23 +320,34 @@ public class Coder {
 
 		startCoder(verbose);
 		if (parameters.sampleEncodingOrder == CONS.BAND_SEQUENTIAL) {
-			codeBSQ(verbose);
+			if (threads > 1 && BandParallelEncoder.getWindow(parameters, threads) > 1) {
+				codeBSQParallel(verbose);
+			} else {
+				codeBSQ(verbose);
+			}
 		} else {
 			codeBI(verbose);
 		}
 
 		ec.terminate();
 
-		int oddBytes = (int) (file.length() % parameters.outputWordSize);
+		// the length of the output is counted, since it may not be a file
+		long writtenBytes = bos.getBitsWritten() / CONS.BYTE;
+		int oddBytes = (int) (writtenBytes % parameters.outputWordSize);
 		if (oddBytes != 0) {
-			byte b[] = new byte[parameters.outputWordSize - oddBytes];
-			Arrays.fill(b, (byte)0);
-			fileStream.write(b);
+			for (int i = oddBytes; i < parameters.outputWordSize; i++) {
+				bos.write(CONS.BYTE, 0);
+			}
+			writtenBytes += parameters.outputWordSize - oddBytes;
+		}
+		if (closeOutput) {
+			bos.close();
+		} else {
+			bos.flush();
 		}
-		fileStream.close();
 
 		if (verbose) {
-			System.out.println("\rWritten " + file.length() + " bytes  ");
+			System.out.println("\rWritten " + writtenBytes + " bytes  ");
 		}
 
 	}
@@ -268,14 +360,16 @@ public class Coder {
 	 */
 	private void codeBSQ(boolean verbose) throws IOException {
 		int bands[][][] = new int[parameters.numberPredictionBands + 1][][];
-		int bandSize = geo[CONS.HEIGHT]*geo[CONS.WIDTH];
+		int P = parameters.numberPredictionBands;
+		int width = geo[CONS.WIDTH];
 		int value;
 		if(verbose || debugMode) {
 			System.out.println("Coding BSQ");
 		}
 		try {
-			RawImage image = new RawImage(inputFile, geo, originalPixelOrder, RawImage.READ);
-			RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], pixelOrderTransformation, RawImage.READ, true);
+			RawImage image = openInputImage();
+			RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], inputTransformation, RawImage.READ, true);
+			startPipeline();
 	
 			if(debugMode) {
 				System.err.println("debugInfo: RawImage created");
@@ -284,44 +378,265 @@ public class Coder {
 				if (verbose) {
 					System.out.print("\rCoding band: " + z);
 				}
-				ec.init(z);
 				prepareBands(z, bands, it, geo[CONS.HEIGHT]);
-				for (int y = 0; y < geo[CONS.HEIGHT]; y ++) {
-					for (int x = 0; x < geo[CONS.WIDTH]; x ++) {
-						value = predictor.compress(bands, z, y, x, parameters.numberPredictionBands, y);
-						ec.codeSample(value, y*geo[CONS.WIDTH] + x, z);
-						ec.update(value, y*geo[CONS.WIDTH] + x, z);
-						deltaSaveSample(value, y, x, deltaCounter == bandSize,
-								z == geo[CONS.BANDS] - 1);
+				// first row
+				for (int x = 0; x < width; x ++) {
+					value = predictor.compress(bands, z, 0, x, P, 0);
+					encodeSample(value, x, z);
+				}
+				for (int y = 1; y < geo[CONS.HEIGHT]; y ++) {
+					// first column
+					value = predictor.compress(bands, z, y, 0, P, y);
+					encodeSample(value, y*width, z);
+					// interior
+					for (int x = 1; x < width - 1; x ++) {
+						value = predictor.compressInterior(bands, z, y, x, P, y);
+						encodeSample(value, y*width + x, z);
+					}
+					// last column
+					if (width > 1) {
+						value = predictor.compress(bands, z, y, width - 1, P, y);
+						encodeSample(value, y*width + width - 1, z);
 					}
 				}
 			}
+			endPipeline();
 			predictor.end();
 			ec.terminate();
-			image.close(it);
+			closeInputImage(image, it);
+			if(saveState) {
+				saveAppState(predictor.getWeightVector());
+			}
+			if (verbose) {
+				System.out.print("\rCoding image finished");
+			}
+		} catch(IOException e) {
+			if(debugMode) {
+				e.printStackTrace();
+			}
+			throw e;
+		} catch(Exception e) {
+			if(debugMode) {
+				e.printStackTrace();
+			}
+			
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Encodes an image in BSQ order computing the residuals of several
+	 * bands in parallel. The bands are read and predicted in tasks of
+	 * {@link BandParallelEncoder#getTaskBands()} bands, with at most
+	 * {@link BandParallelEncoder#getWindow()} tasks in flight. The residuals
+	 * of every task are entropy coded, in order, as soon as it finishes, and
+	 * then its planes are used by the next task.
+	 *
+	 * @param verbose indicates whether to display information
+	 * @throws IOException if can not write information to the file
+	 */
+	private void codeBSQParallel(boolean verbose) throws IOException {
+		int P = parameters.numberPredictionBands;
+		int numBands = geo[CONS.BANDS];
+		int height = geo[CONS.HEIGHT];
+		int width = geo[CONS.WIDTH];
+		try {
+			BandParallelEncoder engine = new BandParallelEncoder(parameters, threads, time);
+			int taskBands = engine.getTaskBands();
+			int window = engine.getWindow();
+			int numTasks = (numBands + taskBands - 1) / taskBands;
+			if(verbose || debugMode) {
+				System.out.println("Coding BSQ with " + threads + " threads and " + window + " tasks in flight");
+			}
+			// the bands of the tasks in flight and the P bands before them
+			int bands[][][] = new int[Math.min(window * taskBands + P, numBands)][][];
+			int residuals[][][][] = new int[window][][][];
+			@SuppressWarnings("unchecked")
+			Future<Void> tasks[] = (Future<Void>[]) new Future<?>[window];
+
+			RawImage image = openInputImage();
+			RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], inputTransformation, RawImage.READ, true);
+			startPipeline();
+	
+			if(debugMode) {
+				System.err.println("debugInfo: RawImage created");
+			}
+			for (int task = 0; task < numTasks + window; task++) {
+				// the oldest task is entropy coded to free its slot
+				int oldest = task - window;
+				if (oldest >= 0 && oldest < numTasks) {
+					int slot = oldest % window;
+					int firstBand = oldest * taskBands;
+					if (verbose) {
+						System.out.print("\rCoding bands: " + firstBand + " to " + (firstBand + residuals[slot].length - 1));
+					}
+					engine.await(tasks[slot]);
+					tasks[slot] = null;
+					for (int i = 0; i < residuals[slot].length; i++) {
+						int[][] band = residuals[slot][i];
+						for (int y = 0; y < height; y ++) {
+							for (int x = 0; x < width; x ++) {
+								encodeSample(band[y][x], y*width + x, firstBand + i);
+							}
+						}
+					}
+				}
+				if (task < numTasks) {
+					int slot = task % window;
+					int firstBand = task * taskBands;
+					int taskNumBands = Math.min(taskBands, numBands - firstBand);
+					int previousBands = Math.min(firstBand, P);
+					// the band z is kept in bands[z % bands.length], whose
+					// previous band is not needed by any task in flight
+					int view[][][] = new int[previousBands + taskNumBands][][];
+					for (int i = -previousBands; i < taskNumBands; i++) {
+						int b = (firstBand + i) % bands.length;
+						if (i >= 0) {
+							if (bands[b] == null) {
+								bands[b] = new int[height][width];
+							}
+							readBand(it, bands[b]);
+						}
+						view[previousBands + i] = bands[b];
+					}
+					if (residuals[slot] == null || residuals[slot].length != taskNumBands) {
+						residuals[slot] = new int[taskNumBands][height][width];
+					}
+					tasks[slot] = engine.submit(slot, view, previousBands, firstBand, taskNumBands, residuals[slot]);
+				}
+			}
+			endPipeline();
+			engine.end();
+			ec.terminate();
+			closeInputImage(image, it);
 			if(saveState) {
-				saveAppState();
+				saveAppState(engine.getWeightVector());
 			}
 			if (verbose) {
 				System.out.print("\rCoding image finished");
 			}
+		} catch(IOException e) {
+			if(debugMode) {
+				e.printStackTrace();
+			}
+			throw e;
 		} catch(Exception e) {
 			if(debugMode) {
 				e.printStackTrace();
 			}
 			
-			throw new Error("Unexpected exception ocurred "+e.getMessage());
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
 		}
 	}
 	
+	/**
+	 * Opens the input image to be read in the encoding order. When the sample
+	 * order of the input file is not the encoding order, the image is first
+	 * transposed to a temporary file, next to the output file, so its lines
+	 * are read sequentially. An image in a stream is read line by line,
+	 * unless it has to be transposed.
+	 *
+	 * @return the input image
+	 * @throws IOException if the image can not be read or transposed
+	 */
+	private RawImage openInputImage() throws IOException {
+		File input = null;
+		if (inputStream == null) {
+			input = new File(inputFile);
+		} else {
+			if (pixelOrderTransformation[Geometry.Z_SIZE] == Geometry.Z_SIZE) {
+				inputTransformation = pixelOrderTransformation;
+				return new RawImage(new BufferedInputStream(inputStream), geo, originalPixelOrder);
+			}
+			if (debugMode) {
+				System.err.println("debugInfo: copying the input stream to a temporary file");
+			}
+			spooledFile = createTemporaryFile();
+			OutputStream spool = new FileOutputStream(spooledFile);
+			byte[] buffer = new byte[1 << 16];
+			int read;
+			while ((read = inputStream.read(buffer)) > 0) {
+				spool.write(buffer, 0, read);
+			}
+			spool.close();
+			input = spooledFile;
+		}
+		if (!transpose || Arrays.equals(pixelOrderTransformation, OrderConverter.DIM_TRANSP_IDENTITY)) {
+			inputTransformation = pixelOrderTransformation;
+			return configureImage(new RawImage(input, geo, originalPixelOrder, RawImage.READ));
+		}
+		if (debugMode) {
+			System.err.println("debugInfo: transposing the input image");
+		}
+		Transposer transposer = new Transposer(geo, originalPixelOrder, pixelOrderTransformation,
+				Runtime.getRuntime().maxMemory() / 4);
+		transposedFile = createTemporaryFile();
+		transposer.transpose(input, transposedFile);
+		inputTransformation = OrderConverter.DIM_TRANSP_IDENTITY;
+		return configureImage(new RawImage(transposedFile, geo, transposer.getPixelOrder(), RawImage.READ));
+	}
+
+	/**
+	 * Sets the cache memory and the prefetch depth of an image file given
+	 * by the user.
+	 *
+	 * @param image is the image
+	 * @return the same image
+	 */
+	private RawImage configureImage(RawImage image) {
+		if (cacheMemory > 0) {
+			image.setCacheMemory(cacheMemory);
+		}
+		if (prefetchDepth > 0) {
+			image.setPrefetchDepth(prefetchDepth);
+		}
+		return image;
+	}
+
+	/**
+	 * Creates a temporary file next to the output file, or in the default
+	 * temporary directory when the output is not a file.
+	 *
+	 * @return the temporary file, that is removed on exit
+	 * @throws IOException if the file can not be created
+	 */
+	private File createTemporaryFile() throws IOException {
+		File directory = null;
+		if (closeOutput) {
+			directory = new File(outputFile).getAbsoluteFile().getParentFile();
+		}
+		File temporaryFile = File.createTempFile("emporda", ".raw", directory);
+		temporaryFile.deleteOnExit();
+		return temporaryFile;
+	}
+
+	/**
+	 * Closes the input image and removes the temporary images, if any.
+	 *
+	 * @param image is the input image
+	 * @param it is the iterator over the input image
+	 * @throws IOException if the image can not be closed
+	 */
+	private void closeInputImage(RawImage image, RawImageIterator<int[]> it) throws IOException {
+		image.close(it);
+		if (transposedFile != null) {
+			transposedFile.delete();
+			transposedFile = null;
+		}
+		if (spooledFile != null) {
+			spooledFile.delete();
+			spooledFile = null;
+		}
+	}
+
 	/**
 	 * Stores the state of the weight vector used
 	 * by the predictor in a file
+	 * @param weightVector is the final weight vector of every band
 	 * @throws IOException
 	 */
-	private void saveAppState() throws IOException {
+	private void saveAppState(long[][] weightVector) throws IOException {
 		Parameters newState = new Parameters(parameters);
-		long[][] weightVector = predictor.getWeightVector();
 		int[] accTable = null;
 		int[] counter = null;
 		try {
@@ -412,11 +727,11 @@ public class Coder {
 	/**
 	 * Reads the next band of the image from the input file.
 	 * @param it the BSQ iterator over the image
-	 * @return the next band of the image
+	 * @param band is where the next band of the image is stored
 	 */
 	private void readBand(RawImageIterator<int[]> it, int[][] band) {
 		for(int i=0;i<geo[CONS.HEIGHT];i++) {
-			band[i] = it.next();
+			it.nextInto(band[i]);
 		}
 	}
 	
@@ -429,11 +744,14 @@ public class Coder {
 	 * @param height is the height of image.
 	 */
 	private void prepareBands(int z, int[][][] bands, RawImageIterator<int[]> it, int height) {
-		bands[0] = null;
+		int[][] tmpBand = bands[0];
 		for(int i = 0; i < parameters.numberPredictionBands; i ++) {
 			bands[i] = bands[i + 1];
 		}
-		bands[parameters.numberPredictionBands] = new int[height][];
+		if(tmpBand == null) {
+			tmpBand = new int[height][geo[CONS.WIDTH]];
+		}
+		bands[parameters.numberPredictionBands] = tmpBand;
 		readBand(it, bands[parameters.numberPredictionBands]);
 	}
 
@@ -451,53 +769,76 @@ public class Coder {
 					geo[CONS.BANDS] / M + 1;
 
 		int value;
-		int bands[][][] = new int[geo[CONS.BANDS]][2][];
-		int bandSize = geo[CONS.HEIGHT]*geo[CONS.WIDTH];
+		int width = geo[CONS.WIDTH];
+		int bands[][][] = new int[geo[CONS.BANDS]][2][width];
 		
 		if(verbose || debugMode) {
 			System.out.println("Coding BI");
 		}
 		try {
-			RawImage image = new RawImage(inputFile, geo, originalPixelOrder, RawImage.READ);
-			RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], pixelOrderTransformation, RawImage.READ, true);
+			RawImage image = openInputImage();
+			RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], inputTransformation, RawImage.READ, true);
+			startPipeline();
 			for (int y = 0; y < geo[CONS.HEIGHT]; y++) {
 				prepareLines(y, bands, it);
 				if (verbose && geo[CONS.HEIGHT] % 10 == 0) {
 					System.out.print("\rCoding rows: " + y + " to " + Math.min(y+10, geo[CONS.HEIGHT]));
 				}
 				for (int i = 0; i < auxValue; i++) {
-					for (int x = 0; x < geo[CONS.WIDTH]; x++) {
-						for (int z = i * M; z < Math.min((i+1) * M, geo[CONS.BANDS]); z++) {
-							if (x == 0 && y == 0) {
-								ec.init(z);
+					int firstBand = i * M;
+					int endBand = Math.min((i+1) * M, geo[CONS.BANDS]);
+					if (y == 0) {
+						// first row
+						for (int x = 0; x < width; x++) {
+							for (int z = firstBand; z < endBand; z++) {
+								value = predictor.compress(bands, z, 0, x, z, 1);
+								encodeSample(value, x, z);
 							}
-							value = predictor.compress(bands, z, y, x, z, 1);
-							
-							ec.codeSample(value, y*geo[CONS.WIDTH] + x, z);
-							ec.update(value, y*geo[CONS.WIDTH] + x, z);
-							deltaSaveSample(value, y, x, deltaCounter == bandSize, 
-									z == geo[CONS.BANDS] - 1 && y == geo[CONS.HEIGHT] - 1 &&
-									x == geo[CONS.WIDTH]- 1 );
-							
+						}
+						continue;
+					}
+					// first column
+					for (int z = firstBand; z < endBand; z++) {
+						value = predictor.compress(bands, z, y, 0, z, 1);
+						encodeSample(value, y*width, z);
+					}
+					// interior
+					for (int x = 1; x < width - 1; x++) {
+						for (int z = firstBand; z < endBand; z++) {
+							value = predictor.compressInterior(bands, z, y, x, z, 1);
+							encodeSample(value, y*width + x, z);
+						}
+					}
+					// last column
+					if (width > 1) {
+						for (int z = firstBand; z < endBand; z++) {
+							value = predictor.compress(bands, z, y, width - 1, z, 1);
+							encodeSample(value, y*width + width - 1, z);
 						}
 					}
 				}
 			}
+			endPipeline();
 			predictor.end();
 			ec.terminate();
-			image.close(it);
+			closeInputImage(image, it);
 			if(saveState) {
-				saveAppState();
+				saveAppState(predictor.getWeightVector());
 			}
 			if (verbose || debugMode) {
 				System.out.print("\rCoding image finished");
 			}
+		} catch(IOException e) {
+			if(debugMode) {
+				e.printStackTrace();
+			}
+			throw e;
 		} catch(Exception e) {
 			if(debugMode) {
 				e.printStackTrace();
 			}
 			
-			throw new Error("Unexpected exception ocurred "+e.getMessage());
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
 		}
 	}
 	
@@ -510,15 +851,113 @@ public class Coder {
 	private void prepareLines(int y, int[][][] bands, RawImageIterator<int[]> it) {
 		if(y != 0) {
 			for(int i=0;i<geo[CONS.BANDS];i++) {
+				int[] tmpLine = bands[i][0];
 				bands[i][0] = bands[i][1];
+				bands[i][1] = tmpLine;
 			}
 		}
 		for(int i=0;i<geo[CONS.BANDS];i++) {
-			bands[i][1] = it.next();
+			it.nextInto(bands[i][1]);
 		}
 		
 	}
 	
+	/**
+	 * Entropy codes the mapped residual of the sample t of band z, or gives it
+	 * to the entropy coding thread when the pipeline is running.
+	 * 
+	 * @param value is the mapped residual of the sample
+	 * @param t is the position of the sample in the band
+	 * @param z is the band of the sample
+	 * @throws IOException if can not write information to the file
+	 */
+	private void encodeSample(int value, int t, int z) throws IOException {
+		if (ring != null) {
+			ring.put(value, t, z);
+		} else {
+			codeResidual(value, t, z);
+		}
+	}
+
+	/**
+	 * Entropy codes the mapped residual of the sample t of band z and
+	 * stores it in the delta file when it is requested. The entropy coder
+	 * is initialized for band z with its first sample.
+	 * 
+	 * @param value is the mapped residual of the sample
+	 * @param t is the position of the sample in the band
+	 * @param z is the band of the sample
+	 * @throws IOException if can not write information to the file
+	 */
+	private void codeResidual(int value, int t, int z) throws IOException {
+		if (t == 0) {
+			ec.init(z);
+		}
+		ec.codeSample(value, t, z);
+		ec.update(value, t, z);
+		if (deltaMode) {
+			int bandSize = geo[CONS.HEIGHT]*geo[CONS.WIDTH];
+			deltaSaveSample(value, t / geo[CONS.WIDTH], t % geo[CONS.WIDTH], deltaCounter == bandSize,
+					z == geo[CONS.BANDS] - 1 && t == bandSize - 1);
+		}
+	}
+
+	/**
+	 * Starts the entropy coding thread when the pipeline is enabled. From
+	 * this moment the mapped residuals given to encodeSample are entropy
+	 * coded by this thread.
+	 */
+	private void startPipeline() {
+		if (!pipeline) {
+			return;
+		}
+		ring = new ResidualRingBuffer(PIPELINE_CAPACITY);
+		pipelineError = null;
+		pipelineThread = new Thread("EMPORDA entropy coder") {
+			public void run() {
+				try {
+					ring.consume(new ResidualRingBuffer.Sink() {
+						public void codeResidual(int value, int t, int z) throws IOException {
+							Coder.this.codeResidual(value, t, z);
+						}
+					});
+				} catch (Throwable e) {
+					pipelineError = e;
+					ring.abort(e);
+				}
+			}
+		};
+		pipelineThread.setDaemon(true);
+		pipelineThread.start();
+	}
+
+	/**
+	 * Waits until the entropy coding thread has coded all the mapped
+	 * residuals and stops it.
+	 * 
+	 * @throws IOException if the entropy coding thread has failed
+	 */
+	private void endPipeline() throws IOException {
+		if (ring == null) {
+			return;
+		}
+		ring.close();
+		try {
+			pipelineThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the entropy coder", e);
+		}
+		ring = null;
+		pipelineThread = null;
+		if (pipelineError instanceof IOException) {
+			throw (IOException) pipelineError;
+		}
+		if (pipelineError != null) {
+			throw new IOException("Entropy coding failed: " + pipelineError.getMessage(), pipelineError);
+		}
+	}
+
 	/**
 	 * Stores a sample to deltaFrame, and if it is filled, then the frame
 	 * is written to the file
@@ -555,8 +994,7 @@ public class Coder {
 				// for(int x = 0; x < width;  x ++) {
 				// 	System.out.println(band[i][x]);
 				// }
-				deltaIterator.next();
-				deltaIterator.set(band[i]);
+				deltaIterator.setFrom(band[i]);
 			}
 			if (last) {
 	    		deltaFile.close(deltaIterator);
@@ -579,5 +1017,50 @@ public class Coder {
 	public void setBitCost(int bitCost) {
 		this.bitCost  = bitCost;
 	}
+
+	/**
+	 * Setter for pipeline
+	 * @param pipeline indicates if the entropy coding is done in a
+	 * different thread than the prediction
+	 */
+	public void setPipeline(boolean pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * Setter for transpose
+	 * @param transpose indicates if the input image is transposed to the
+	 * encoding order before coding it when its sample order is different
+	 */
+	public void setTranspose(boolean transpose) {
+		this.transpose = transpose;
+	}
+
+	/**
+	 * Setter for threads
+	 * @param threads is the number of threads used to compute the residuals
+	 * in BSQ order
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Setter for cacheMemory
+	 * @param cacheMemory is the number of megabytes of the cache of the
+	 * input image file, or 0 to use the default
+	 */
+	public void setCacheMemory(int cacheMemory) {
+		this.cacheMemory = cacheMemory;
+	}
+
+	/**
+	 * Setter for prefetchDepth
+	 * @param prefetchDepth is the number of blocks of the input image file
+	 * read ahead in a background thread, or 0 to use the default
+	 */
+	public void setPrefetchDepth(int prefetchDepth) {
+		this.prefetchDepth = prefetchDepth;
+	}
 	
 }
@@ -75,7 +75,7 @@ public class CoderHeader {
 	 *             if can not write information to the file
 	 */
 	public void imageHeader() throws IOException {
-		int sampleType = (geo[CONS.TYPE] == 3 || geo[CONS.TYPE] == 1) ? 1 : 0;
+		int sampleType = (geo[CONS.TYPE] == 3) ? 1 : 0;
 		int bitsWritten = 0;
 
 		if (debugMode) {
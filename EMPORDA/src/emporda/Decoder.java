@@ -33,6 +33,7 @@ import GiciEntropyCoder.Interface.EntropyDecoder;
 import GiciEntropyCoder.EntropyIntegerCoder.EntropyIntegerDecoder;
 import GiciEntropyCoder.EntropyBlockCoder.EntropyBlockDecoder;
 import GiciException.ParameterException;
+import GiciFile.RawImage.Geometry;
 import GiciFile.RawImage.OrderConverter;
 import GiciFile.RawImage.RawImage;
 import GiciFile.RawImage.RawImageIterator;
@@ -49,8 +50,6 @@ import java.io.*;
  */
 public class Decoder {
 
-	private final File file;
-	private final FileInputStream fileStream;
 	private final BitInputStream bis;
 	private EntropyDecoder ed;
 	private Parameters parameters = null;
@@ -62,19 +61,46 @@ public class Decoder {
 	private int sampleOrder;
 	private int pixelFormat;
 	private boolean time;
+	private boolean pipeline = false;
+
+	/**
+	 * Megabytes of the cache of the output image file, or 0 to use the
+	 * default of RawImage
+	 */
+	private int cacheMemory = 0;
+	private LineWriter writer = null;
+
+	/**
+	 * The stream the image is written to, or null. When it can not be
+	 * written in the decoding order keeping its outermost dimension, it is
+	 * first written to spooledFile.
+	 */
+	private OutputStream outputStream = null;
+	private File spooledFile = null;
+
 	/**
 	 * Constructor of Decoder. It receives the name of the input file.
 	 *
 	 * @param inputFile the file where is saved the image that is going
-	 * to be decompressed
+	 * to be decompressed, or {@link CONS#STANDARD_STREAM} to read it from
+	 * the standard input
+	 * @param outputFile the file where the image will be saved, or
+	 * {@link CONS#STANDARD_STREAM} to write it to the standard output
 	 * @throws FileNotFoundException when something goes wrong and writing must be stopped
 	 */
 	public Decoder (String inputFile, String outputFile, boolean debugMode, int sampleOrder, int pixelFormat, 
 			boolean time) throws FileNotFoundException {
 		
-		file = new File(inputFile);
-		fileStream = new FileInputStream(file);
-		bis = new BitInputStream( new BufferedInputStream( fileStream ) );
+		InputStream inputStream;
+		if (inputFile.equals(CONS.STANDARD_STREAM)) {
+			inputStream = new FileInputStream(FileDescriptor.in);
+		} else {
+			inputStream = new FileInputStream(inputFile);
+		}
+		bis = new BitInputStream( inputStream );
+		if (outputFile.equals(CONS.STANDARD_STREAM)) {
+			outputStream = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out));
+		}
 		this.sampleOrder = sampleOrder;
 		this.debugMode = debugMode;
 		this.outputFile = outputFile;
@@ -82,6 +108,24 @@ public class Decoder {
 		this.time = time;
 	}
 
+	/**
+	 * Constructor of Decoder that reads the compressed image from a stream and
+	 * writes the image to another one, that is flushed but not closed.
+	 *
+	 * @param inputStream the stream that contains the compressed image
+	 * @param outputStream the stream where the image will be written
+	 */
+	public Decoder (InputStream inputStream, OutputStream outputStream, boolean debugMode, int sampleOrder, 
+			int pixelFormat, boolean time) {
+		
+		bis = new BitInputStream( inputStream );
+		this.outputStream = new BufferedOutputStream(outputStream);
+		this.sampleOrder = sampleOrder;
+		this.debugMode = debugMode;
+		this.pixelFormat = pixelFormat;
+		this.time = time;
+	}
+
 	/**
 	 * Reads the header with all the needed information for  the decompression process.
 	 *
@@ -160,9 +204,10 @@ public class Decoder {
 	 * Compiles all the information needed to create the entropy decoder,
 	 * and creates it.
 	 * @param verbose indicates whether to display information
-	 * @throws ParameterException 
+	 * @throws IOException if the entropy decoder can not be created
+	 * @throws ParameterException when an invalid parameter is detected
 	 */
-	private void startDecoder(boolean verbose) throws ParameterException {
+	private void startDecoder(boolean verbose) throws IOException, ParameterException {
 	
 		if(verbose) {
                 	System.out.println("Z: " + parameters.getImageGeometry()[CONS.BANDS]
@@ -182,8 +227,7 @@ public class Decoder {
 				parameters.getAccInitTable(),
 				parameters.getImageGeometry()[CONS.BANDS]);
 			} catch (ParameterException e) {
-				e.printStackTrace();
-				System.exit(-1);
+				throw new IOException(e.getMessage(), e);
 			}
 			if(verbose) {
 				System.out.println("Starting sample adaptive decoder");
@@ -201,7 +245,7 @@ public class Decoder {
 				System.out.println("Starting block adaptive decoder");
 			}
 		}
-		predictor = new Predictor(parameters, time);
+		predictor = PredictorFactory.getPredictor(parameters, time);
 	}
 
 	
@@ -210,16 +254,12 @@ public class Decoder {
 	 *
 	 * @return the whole image decoded
 	 * @throws IOException when something goes wrong and compression must be stopped
+	 * @throws ParameterException when an invalid parameter is detected
 	 */
-	public void decode(boolean verbose) throws IOException {
+	public void decode(boolean verbose) throws IOException, ParameterException {
 		int readBytes = bis.available();
 		
-		try {
-			startDecoder(verbose);
-		} catch (ParameterException e) {
-			e.printStackTrace();
-			System.exit(-1);
-		}
+		startDecoder(verbose);
 		if (parameters.sampleEncodingOrder == CONS.BAND_SEQUENTIAL) {
 			decodeBSQ(verbose);
 		} else {
@@ -247,53 +287,184 @@ public class Decoder {
 		int bands = imageGeometry[CONS.BANDS];
 		int height = imageGeometry[CONS.HEIGHT];
 		int width = imageGeometry[CONS.WIDTH];
-		int imageBands[][][] = new int[parameters.numberPredictionBands + 1][height][width];
+		int P = parameters.numberPredictionBands;
+		int imageBands[][][] = new int[P + 1][height][width];
 		int[] geometry = parameters.getImageGeometry();
 		if(pixelFormat > 0) {
 			geometry[CONS.TYPE] = pixelFormat; 
 		}
 		try {
-			RawImage image = new RawImage(outputFile, geometry, savedPixelOrder, RawImage.WRITE);
+			RawImage image = openOutputImage(geometry);
 			RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], pixelOrderTransformation, RawImage.WRITE, true);
+			startWriter(it, width, 2 * height);
 			for (int z = 0; z < bands; z ++) {
 				if (verbose) {
 					System.out.print("\rDecoding band: " + z);
 				}
 				ed.init(z);
-				for (int y = 0; y < height; y ++) {
-					for (int x = 0; x < width; x ++) {
-						imageBands[parameters.numberPredictionBands][y][x] = ed.decodeSample(y*width + x, z);
-						ed.update(imageBands[parameters.numberPredictionBands][y][x], y*width + x, z);
-						imageBands[parameters.numberPredictionBands][y][x] = predictor.decompress(imageBands, z, y, x, parameters.numberPredictionBands, y);
+				int[][] band = imageBands[P];
+				// first row
+				for (int x = 0; x < width; x ++) {
+					decodeResidual(band[0], z, 0, x, width);
+					band[0][x] = predictor.decompress(imageBands, z, 0, x, P, 0);
+				}
+				for (int y = 1; y < height; y ++) {
+					int[] line = band[y];
+					// first column
+					decodeResidual(line, z, y, 0, width);
+					line[0] = predictor.decompress(imageBands, z, y, 0, P, y);
+					// interior
+					for (int x = 1; x < width - 1; x ++) {
+						decodeResidual(line, z, y, x, width);
+						line[x] = predictor.decompressInterior(imageBands, z, y, x, P, y);
+					}
+					// last column
+					if (width > 1) {
+						decodeResidual(line, z, y, width - 1, width);
+						line[width - 1] = predictor.decompress(imageBands, z, y, width - 1, P, y);
 					}
 				}
 				prepareBands(imageBands, it);
 			}
+			endWriter();
 			predictor.end();
-			image.close(it);
+			closeOutputImage(image, it);
 			if (verbose) {
 				System.out.print("\rDecoding image finished");
 			}
 		}catch(UnsupportedOperationException e) {
-			throw new Error("Unexpected exception ocurred "+e.getMessage());
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
 		}catch(IndexOutOfBoundsException e) {
-			e.printStackTrace();
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
 		}catch(ClassCastException e) {
-			throw new Error("Unexpected exception ocurred "+e.getMessage());
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Opens the output image to be written in the decoding order. An image
+	 * written to a stream is written line by line, unless the lines have to
+	 * be transposed, in which case it is first written to a temporary file.
+	 * 
+	 * @param geometry is the geometry of the output image
+	 * @return the output image
+	 * @throws IOException if the temporary file can not be created
+	 */
+	private RawImage openOutputImage(int[] geometry) throws IOException {
+		if (outputStream == null) {
+			return configureImage(new RawImage(outputFile, geometry, savedPixelOrder, RawImage.WRITE));
+		}
+		if (pixelOrderTransformation[Geometry.Z_SIZE] == Geometry.Z_SIZE) {
+			return new RawImage(outputStream, geometry, savedPixelOrder);
+		}
+		spooledFile = File.createTempFile("emporda", ".raw");
+		spooledFile.deleteOnExit();
+		return configureImage(new RawImage(spooledFile, geometry, savedPixelOrder, RawImage.WRITE));
+	}
+
+	/**
+	 * Sets the cache memory of an image file given by the user.
+	 *
+	 * @param image is the image
+	 * @return the same image
+	 */
+	private RawImage configureImage(RawImage image) {
+		if (cacheMemory > 0) {
+			image.setCacheMemory(cacheMemory);
+		}
+		return image;
+	}
+
+	/**
+	 * Closes the output image. When it has been written to a temporary file,
+	 * the file is copied to the output stream and removed.
+	 * 
+	 * @param image is the output image
+	 * @param it is the iterator over the output image
+	 * @throws IOException if the image can not be closed or copied
+	 */
+	private void closeOutputImage(RawImage image, RawImageIterator<int[]> it) throws IOException {
+		image.close(it);
+		if (spooledFile != null) {
+			InputStream spool = new FileInputStream(spooledFile);
+			byte[] buffer = new byte[1 << 16];
+			int read;
+			while ((read = spool.read(buffer)) > 0) {
+				outputStream.write(buffer, 0, read);
+			}
+			spool.close();
+			spooledFile.delete();
+			spooledFile = null;
+		}
+		if (outputStream != null) {
+			outputStream.flush();
 		}
 	}
 	
+	/**
+	 * Decodes the mapped residual of the sample s[z][y][x], updates the
+	 * entropy decoder and leaves the residual in line[x].
+	 * 
+	 * @param line is the line y of band z
+	 * @param z is the band of the sample
+	 * @param y is the line of the sample
+	 * @param x is the column of the sample
+	 * @param width is the width of the image
+	 * @throws IOException if can not read information from the file
+	 */
+	private void decodeResidual(int[] line, int z, int y, int x, int width) throws IOException {
+		int t = y*width + x;
+		line[x] = ed.decodeSample(t, z);
+		ed.update(line[x], t, z);
+	}
+
 	/**
 	 * Write the next band of the image.
 	 * @param band is the band to write in the output file.
 	 * @param it the BSQ iterator over the image
 	 */
-	private void writeBand(int[][] band, RawImageIterator<int[]> it) {
+	private void writeBand(int[][] band, RawImageIterator<int[]> it) throws IOException {
 		int height =  parameters.getImageGeometry()[CONS.HEIGHT];
 
 		for(int i = 0; i < height; i ++) {
-			it.next();
-			it.set(band[i]);
+			writeLine(band[i], it);
+		}
+	}
+
+	/**
+	 * Write the next line of the image, directly or through the line writer.
+	 * @param line is the line to write in the output file.
+	 * @param it the iterator over the image
+	 * @throws IOException if the line writer has failed
+	 */
+	private void writeLine(int[] line, RawImageIterator<int[]> it) throws IOException {
+		if (writer != null) {
+			writer.write(line);
+		} else {
+			it.setFrom(line);
+		}
+	}
+
+	/**
+	 * Starts the line writer when the pipeline is enabled.
+	 * @param it the iterator over the image
+	 * @param width is the width of the image
+	 * @param capacity is the number of lines that can be waiting to be written
+	 */
+	private void startWriter(RawImageIterator<int[]> it, int width, int capacity) {
+		if (pipeline) {
+			writer = new LineWriter(it, width, capacity);
+		}
+	}
+
+	/**
+	 * Waits until the line writer has written all the lines and stops it.
+	 * @throws IOException if the line writer has failed
+	 */
+	private void endWriter() throws IOException {
+		if (writer != null) {
+			writer.close();
+			writer = null;
 		}
 	}
 	
@@ -302,7 +473,7 @@ public class Decoder {
 	 * @param bands an array with the prediction bands
 	 * @param it the BSQ iterator over the image
 	 */
-	private void prepareBands(int[][][] bands, RawImageIterator<int[]> it) {
+	private void prepareBands(int[][][] bands, RawImageIterator<int[]> it) throws IOException {
 		int[][] tmpBand = bands[0];
 		writeBand(bands[parameters.numberPredictionBands], it);		
 		for(int i = 0; i < parameters.numberPredictionBands; i ++) {
@@ -334,8 +505,9 @@ public class Decoder {
 			geometry[CONS.TYPE] = pixelFormat; 
 		}
 		try {
-			RawImage image = new RawImage(outputFile, geometry, savedPixelOrder, RawImage.WRITE);
+			RawImage image = openOutputImage(geometry);
 			RawImageIterator<int[]> it = (RawImageIterator<int[]>) image.getIterator(new int[0], pixelOrderTransformation, RawImage.WRITE, true);
+			startWriter(it, width, 2 * bands);
 			int auxValue = (bands % M == 0) ?
 					bands / M :
 					bands / M + 1;
@@ -345,30 +517,55 @@ public class Decoder {
 					System.out.print("\rDecoding rows: " + y + " to " + Math.min(y+10, height));
 				}
 				for (int i = 0; i < auxValue; i++) {
-					for (int x = 0; x < width; x++) {
-						for (int z = i * M; z < Math.min((i+1) * M, bands); z++) {
-							if (x == 0 && y == 0) {
-								ed.init(z);
+					int firstBand = i * M;
+					int endBand = Math.min((i+1) * M, bands);
+					if (y == 0) {
+						// first row
+						for (int x = 0; x < width; x++) {
+							for (int z = firstBand; z < endBand; z++) {
+								if (x == 0) {
+									ed.init(z);
+								}
+								decodeResidual(imageBands[z][1], z, 0, x, width);
+								imageBands[z][1][x] = predictor.decompress(imageBands, z, 0, x, z, 1);
 							}
-							imageBands[z][1][x] = ed.decodeSample(y*width + x, z);
-							ed.update(imageBands[z][1][x], y*width + x, z);
-							imageBands[z][1][x] = predictor.decompress(imageBands, z, y, x, z, 1);
+						}
+						continue;
+					}
+					// first column
+					for (int z = firstBand; z < endBand; z++) {
+						decodeResidual(imageBands[z][1], z, y, 0, width);
+						imageBands[z][1][0] = predictor.decompress(imageBands, z, y, 0, z, 1);
+					}
+					// interior
+					for (int x = 1; x < width - 1; x++) {
+						for (int z = firstBand; z < endBand; z++) {
+							decodeResidual(imageBands[z][1], z, y, x, width);
+							imageBands[z][1][x] = predictor.decompressInterior(imageBands, z, y, x, z, 1);
+						}
+					}
+					// last column
+					if (width > 1) {
+						for (int z = firstBand; z < endBand; z++) {
+							decodeResidual(imageBands[z][1], z, y, width - 1, width);
+							imageBands[z][1][width - 1] = predictor.decompress(imageBands, z, y, width - 1, z, 1);
 						}
 					}
 				}
 				prepareLines(imageBands, it);
 			}
+			endWriter();
 			predictor.end();
 			if (verbose) {
 				System.out.print("\rDecoding image finished");
 			}
-			image.close(it);
+			closeOutputImage(image, it);
 		}catch(UnsupportedOperationException e) {
-			throw new Error("Unexpected exception ocurred "+e.getMessage());
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
 		}catch(IndexOutOfBoundsException e) {
-			throw new Error("Unexpected exception ocurred "+e.getMessage());
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
 		}catch(ClassCastException e) {
-			throw new Error("Unexpected exception ocurred "+e.getMessage());
+			throw new IOException("Unexpected exception ocurred "+e.getMessage(), e);
 		}
 	}
 	
@@ -377,7 +574,7 @@ public class Decoder {
 	 * @param bands is the array with the last lines loaded
 	 * @param it the BIL iterator over the image
 	 */
-	private void prepareLines(int[][][] bands, RawImageIterator<int[]> it) {
+	private void prepareLines(int[][][] bands, RawImageIterator<int[]> it) throws IOException {
 		int numBands = parameters.getImageGeometry()[CONS.BANDS];
 		int width = bands[0][0].length;
 		for(int i = 0; i < numBands; i ++) {
@@ -386,9 +583,26 @@ public class Decoder {
 			}
 		}
 		for(int i = 0; i < numBands; i ++) {
-			it.next();
-			it.set(bands[i][1]);
+			writeLine(bands[i][1], it);
 		}
 		
 	}
+
+	/**
+	 * Setter for pipeline
+	 * @param pipeline indicates if the decoded image is written in a
+	 * different thread than the decoding
+	 */
+	public void setPipeline(boolean pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * Setter for cacheMemory
+	 * @param cacheMemory is the number of megabytes of the cache of the
+	 * output image file, or 0 to use the default
+	 */
+	public void setCacheMemory(int cacheMemory) {
+		this.cacheMemory = cacheMemory;
+	}
 }
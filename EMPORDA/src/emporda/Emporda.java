@@ -0,0 +1,413 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+
+package emporda;
+
+import GiciException.ParameterException;
+import GiciFile.RawImage.Geometry;
+import GiciFile.RawImage.OrderConverter;
+import GiciFile.RawImage.Transposer;
+import GiciFile.RawImage.TypeConverter;
+
+import java.io.*;
+import java.nio.*;
+
+
+/**
+ * Library entry point of EMPORDA application. It compresses images that are
+ * already in memory into a ByteBuffer, and decompresses them back, without
+ * writing any file. Errors are thrown as exceptions, the process is never
+ * stopped.
+ * <p>
+ * Images are given in the sample order used by the command line (0 for BSQ,
+ * 1 for BIL and 2 for BIP), and their geometry is the one of the option -ig:
+ * bands, height, width, sample type and byte order. The options are the
+ * contents of an option file, or null to use the default values.
+ * <p>
+ * The result is written from the position of the output buffer given. When
+ * it has not enough room, a bigger buffer is allocated with its contents. The
+ * buffer returned, either the one given or the new one, has its position after
+ * the last byte written, so it has to be flipped to read the result.
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class Emporda {
+
+	/**
+	 * Pixel order of the images of each sample order, by the transformation
+	 * of BSQ to it.
+	 */
+	private static final int[][] PIXEL_ORDER = {
+		OrderConverter.DIM_TRANSP_IDENTITY,
+		OrderConverter.DIM_TRANSP_BSQ_TO_BIL,
+		OrderConverter.DIM_TRANSP_BSQ_TO_BIP
+	};
+
+	/**
+	 * Pixel order transformation between two sample orders, indexed by the
+	 * original and the desired sample order.
+	 */
+	private static final int[][][] TRANSFORMATION = {
+		{OrderConverter.DIM_TRANSP_IDENTITY, OrderConverter.DIM_TRANSP_BSQ_TO_BIL, OrderConverter.DIM_TRANSP_BSQ_TO_BIP},
+		{OrderConverter.DIM_TRANSP_BIL_TO_BSQ, OrderConverter.DIM_TRANSP_IDENTITY, OrderConverter.DIM_TRANSP_BIL_TO_BIP},
+		{OrderConverter.DIM_TRANSP_BIP_TO_BSQ, OrderConverter.DIM_TRANSP_BIP_TO_BIL, OrderConverter.DIM_TRANSP_IDENTITY}
+	};
+
+	private Emporda() {
+	}
+
+	/**
+	 * Compresses an image whose samples are stored, in the sample type and
+	 * byte order of its geometry, between the position and the limit of a
+	 * ByteBuffer. The position of image is not modified.
+	 *
+	 * @param image is the buffer with the samples of the image
+	 * @param geo is the geometry of the image
+	 * @param sampleOrder is the sample order of the image
+	 * @param options are the options of the compression, or null
+	 * @param output is the buffer where the compressed image is written, or null
+	 * @return the buffer with the compressed image
+	 * @throws IOException when something goes wrong and compression must be stopped
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public static ByteBuffer compress(ByteBuffer image, int[] geo, int sampleOrder, String options, ByteBuffer output)
+			throws IOException, ParameterException {
+
+		int[] geometry = getGeometry(geo, sampleOrder);
+		Parameters parameters = new Parameters(options, geometry, true, false, false);
+		int encodingOrder = parameters.sampleEncodingOrder == CONS.BAND_SEQUENTIAL ? 0 : 1;
+		long bytes = getImageBytes(geometry);
+		if (image.remaining() < bytes) {
+			throw new IOException("The image has " + image.remaining() + " bytes and its geometry needs " + bytes);
+		}
+		InputStream input;
+		if (TRANSFORMATION[sampleOrder][encodingOrder][Geometry.Z_SIZE] == Geometry.Z_SIZE) {
+			input = new BufferInputStream(image.duplicate());
+		} else {
+			// the coder would copy the image to a temporary file to transpose it
+			byte[] samples = new byte[(int) bytes];
+			image.duplicate().get(samples);
+			input = new ByteArrayInputStream(transpose(samples, geometry, sampleOrder, encodingOrder));
+			sampleOrder = encodingOrder;
+		}
+		BufferOutputStream out = new BufferOutputStream(output, bytes / 2);
+		Coder coder = new Coder(out, input, sampleOrder, parameters, false, false);
+		coder.writeHeader(parameters);
+		coder.code(false);
+		return out.getBuffer();
+	}
+
+	/**
+	 * Compresses an image whose samples are stored in an int array. The
+	 * samples are cast to the sample type of its geometry.
+	 *
+	 * @param image is the array with the samples of the image
+	 * @param geo is the geometry of the image
+	 * @param sampleOrder is the sample order of the image
+	 * @param options are the options of the compression, or null
+	 * @param output is the buffer where the compressed image is written, or null
+	 * @return the buffer with the compressed image
+	 * @throws IOException when something goes wrong and compression must be stopped
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public static ByteBuffer compress(int[] image, int[] geo, int sampleOrder, String options, ByteBuffer output)
+			throws IOException, ParameterException {
+
+		int[] geometry = getGeometry(geo, sampleOrder);
+		int sampleBytes = getSampleBytes(geometry);
+		checkSamples(image.length, geometry);
+		TypeConverter<int[]> converter = new TypeConverter<int[]>(image, geometry, true);
+		ByteBuffer samples = ByteBuffer.allocate(image.length * sampleBytes).order(converter.getByteOrder());
+		converter.TtoByte(image, 0, image.length, samples, 0, sampleBytes);
+		return compress(samples, geometry, sampleOrder, options, output);
+	}
+
+	/**
+	 * Compresses an image whose samples are stored in a short array. The
+	 * sample type of its geometry has to be of 16 bits, and it indicates if
+	 * the samples are signed or not.
+	 *
+	 * @param image is the array with the samples of the image
+	 * @param geo is the geometry of the image
+	 * @param sampleOrder is the sample order of the image
+	 * @param options are the options of the compression, or null
+	 * @param output is the buffer where the compressed image is written, or null
+	 * @return the buffer with the compressed image
+	 * @throws IOException when something goes wrong and compression must be stopped
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public static ByteBuffer compress(short[] image, int[] geo, int sampleOrder, String options, ByteBuffer output)
+			throws IOException, ParameterException {
+
+		int[] geometry = getGeometry(geo, sampleOrder);
+		if (geometry[CONS.TYPE] != Geometry.U_SHORT && geometry[CONS.TYPE] != Geometry.SHORT) {
+			throw new ParameterException("Samples stored in a short array must have a sample type of 16 bits");
+		}
+		checkSamples(image.length, geometry);
+		ByteBuffer samples = ByteBuffer.allocate(image.length * 2);
+		samples.order(geometry[CONS.ENDIANESS] == Geometry.BIG_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+		samples.asShortBuffer().put(image);
+		return compress(samples, geometry, sampleOrder, options, output);
+	}
+
+	/**
+	 * Decompresses an image stored between the position and the limit of a
+	 * ByteBuffer. The position of compressed is not modified. The samples of
+	 * the image are written in the sample type given by the header of the
+	 * compressed image.
+	 *
+	 * @param compressed is the buffer with the compressed image
+	 * @param sampleOrder is the sample order of the decompressed image
+	 * @param byteOrder is the byte order of the decompressed image
+	 * @param options are the options of the decompression, or null
+	 * @param output is the buffer where the image is written, or null
+	 * @return the buffer with the image
+	 * @throws IOException when something goes wrong and decompression must be stopped
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public static ByteBuffer decompress(ByteBuffer compressed, int sampleOrder, int byteOrder, String options,
+			ByteBuffer output) throws IOException, ParameterException {
+
+		if (sampleOrder < 0 || sampleOrder > 2) {
+			throw new ParameterException("Sample order must be 0 (BSQ), 1 (BIL) or 2 (BIP)");
+		}
+		// the header is read first to know the encoding order
+		Parameters header = new Decoder(new BufferInputStream(compressed.duplicate()), new BufferOutputStream(null, 0),
+				false, sampleOrder, 0, false).readHeader(options);
+		int encodingOrder = header.sampleEncodingOrder == CONS.BAND_SEQUENTIAL ? 0 : 1;
+		int[] geometry = header.getImageGeometry();
+		geometry[CONS.ENDIANESS] = byteOrder;
+		long bytes = getImageBytes(geometry);
+
+		if (TRANSFORMATION[encodingOrder][sampleOrder][Geometry.Z_SIZE] == Geometry.Z_SIZE) {
+			BufferOutputStream out = new BufferOutputStream(output, bytes);
+			decode(compressed, out, sampleOrder, byteOrder, options);
+			return out.getBuffer();
+		}
+		// the decoder would write the image to a temporary file to transpose it
+		BufferOutputStream samples = new BufferOutputStream(ByteBuffer.allocate((int) bytes), 0);
+		decode(compressed, samples, encodingOrder, byteOrder, options);
+		BufferOutputStream out = new BufferOutputStream(output, bytes);
+		out.write(transpose(samples.getBuffer().array(), geometry, encodingOrder, sampleOrder));
+		return out.getBuffer();
+	}
+
+	/**
+	 * Decodes a compressed image to a stream.
+	 *
+	 * @param compressed is the buffer with the compressed image
+	 * @param out is the stream where the image is written
+	 * @param sampleOrder is the sample order of the decompressed image
+	 * @param byteOrder is the byte order of the decompressed image
+	 * @param options are the options of the decompression, or null
+	 * @throws IOException when something goes wrong and decompression must be stopped
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	private static void decode(ByteBuffer compressed, OutputStream out, int sampleOrder, int byteOrder, String options)
+			throws IOException, ParameterException {
+
+		Decoder decoder = new Decoder(new BufferInputStream(compressed.duplicate()), out, false, sampleOrder, 0, false);
+		Parameters parameters = decoder.readHeader(options);
+		parameters.getImageGeometry()[CONS.ENDIANESS] = byteOrder;
+		decoder.decode(false);
+	}
+
+	/**
+	 * Checks the geometry of an image and copies it with the size used by
+	 * the application.
+	 *
+	 * @param geo is the geometry of the image
+	 * @param sampleOrder is the sample order of the image
+	 * @return a copy of the geometry
+	 * @throws ParameterException if the geometry or the sample order are not valid
+	 */
+	private static int[] getGeometry(int[] geo, int sampleOrder) throws ParameterException {
+		if (sampleOrder < 0 || sampleOrder > 2) {
+			throw new ParameterException("Sample order must be 0 (BSQ), 1 (BIL) or 2 (BIP)");
+		}
+		if (geo.length < CONS.ENDIANESS + 1) {
+			throw new ParameterException("Image geometry must have " + (CONS.ENDIANESS + 1) + " values");
+		}
+		if (geo[CONS.TYPE] < Geometry.U_BYTE || geo[CONS.TYPE] > Geometry.SHORT) {
+			throw new ParameterException("Image sample type must be between 1 and 3");
+		}
+		if (geo[CONS.BANDS] < 1 || geo[CONS.HEIGHT] < 1 || geo[CONS.WIDTH] < 1) {
+			throw new ParameterException("Image sizes must be bigger than 0");
+		}
+		int[] geometry = new int[CONS.GEO_SIZE];
+		System.arraycopy(geo, 0, geometry, 0, Math.min(geo.length, CONS.GEO_SIZE));
+		return geometry;
+	}
+
+	/**
+	 * Computes the number of bytes of each sample of an image.
+	 *
+	 * @param geo is the geometry of the image
+	 * @return the number of bytes of a sample
+	 */
+	private static int getSampleBytes(int[] geo) {
+		return geo[CONS.TYPE] == Geometry.U_BYTE ? 1 : 2;
+	}
+
+	/**
+	 * Checks that an array has as many samples as an image.
+	 *
+	 * @param length is the length of the array
+	 * @param geo is the geometry of the image
+	 * @throws IOException if the array has not the samples of the image
+	 */
+	private static void checkSamples(int length, int[] geo) throws IOException {
+		long samples = getImageBytes(geo) / getSampleBytes(geo);
+		if (length != samples) {
+			throw new IOException("The image has " + length + " samples and its geometry needs " + samples);
+		}
+	}
+
+	/**
+	 * Computes the number of bytes of an image.
+	 *
+	 * @param geo is the geometry of the image
+	 * @return the number of bytes of the image
+	 * @throws IOException if the image does not fit in an array
+	 */
+	private static long getImageBytes(int[] geo) throws IOException {
+		long bytes = (long) geo[CONS.BANDS] * geo[CONS.HEIGHT] * geo[CONS.WIDTH] * getSampleBytes(geo);
+		if (bytes > Integer.MAX_VALUE - 8) {
+			throw new IOException("The image is too big to be kept in memory");
+		}
+		return bytes;
+	}
+
+	/**
+	 * Transposes an image in memory from a sample order to another.
+	 *
+	 * @param samples are the bytes of the image
+	 * @param geo is the geometry of the image
+	 * @param from is the sample order of samples
+	 * @param to is the desired sample order
+	 * @return the bytes of the image in the desired sample order
+	 */
+	private static byte[] transpose(byte[] samples, int[] geo, int from, int to) {
+		byte[] transposed = new byte[samples.length];
+		new Transposer(geo, PIXEL_ORDER[from], TRANSFORMATION[from][to], Long.MAX_VALUE).transpose(samples, transposed);
+		return transposed;
+	}
+
+	/**
+	 * InputStream that reads the bytes between the position and the limit
+	 * of a ByteBuffer.
+	 */
+	private static class BufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * OutputStream that writes to a ByteBuffer, that is replaced by a
+	 * bigger one when it has not enough room.
+	 */
+	private static class BufferOutputStream extends OutputStream {
+
+		private ByteBuffer buffer;
+
+		/**
+		 * @param buffer is the buffer where the bytes are written from its
+		 * position, or null to allocate a new one
+		 * @param capacity is the capacity of the buffer allocated when
+		 * buffer is null
+		 */
+		BufferOutputStream(ByteBuffer buffer, long capacity) {
+			if (buffer == null) {
+				buffer = ByteBuffer.allocate((int) Math.max(capacity, 1024));
+			}
+			this.buffer = buffer;
+		}
+
+		public void write(int b) {
+			ensureRemaining(1);
+			buffer.put((byte) b);
+		}
+
+		public void write(byte[] b, int off, int len) {
+			ensureRemaining(len);
+			buffer.put(b, off, len);
+		}
+
+		/**
+		 * Replaces the buffer by a bigger one when it has less room than
+		 * needed.
+		 * @param length is the number of bytes that are going to be written
+		 */
+		private void ensureRemaining(int length) {
+			if (buffer.remaining() >= length) {
+				return;
+			}
+			long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + length);
+			capacity = Math.min(capacity, Integer.MAX_VALUE - 8);
+			ByteBuffer bigger = buffer.isDirect() ? 
+					ByteBuffer.allocateDirect((int) capacity) : ByteBuffer.allocate((int) capacity);
+			bigger.order(buffer.order());
+			buffer.flip();
+			bigger.put(buffer);
+			buffer = bigger;
+		}
+
+		/**
+		 * @return the buffer with the bytes written
+		 */
+		ByteBuffer getBuffer() {
+			return buffer;
+		}
+	}
+}
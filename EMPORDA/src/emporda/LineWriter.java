@@ -0,0 +1,146 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+import GiciFile.RawImage.RawImageIterator;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the lines of the decoded image in a background thread. The decoder
+ * copies every line into a buffer taken from a pool of recycled buffers and
+ * puts it in a bounded queue. The writer thread sets the lines in the image
+ * iterator in the same order and returns the buffers to the pool, so the
+ * conversion of the samples and the disk writes overlap with the decoding.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class LineWriter {
+
+	/**
+	 * Marks the end of the lines in the queue
+	 */
+	private static final int[] END = new int[0];
+
+	private final RawImageIterator<int[]> it;
+	private final ArrayBlockingQueue<int[]> free;
+	private final ArrayBlockingQueue<int[]> full;
+	private final Thread thread;
+	private volatile Throwable error = null;
+
+	/**
+	 * Constructor of LineWriter. It starts the writer thread.
+	 * 
+	 * @param it is the iterator where the lines are set
+	 * @param width is the number of samples of a line
+	 * @param capacity is the number of lines that can be waiting to be written
+	 */
+	public LineWriter(RawImageIterator<int[]> it, int width, int capacity) {
+		this.it = it;
+		free = new ArrayBlockingQueue<int[]>(capacity);
+		full = new ArrayBlockingQueue<int[]>(capacity + 1);
+		for (int i = 0; i < capacity; i++) {
+			free.add(new int[width]);
+		}
+		thread = new Thread("EMPORDA line writer") {
+			public void run() {
+				writeLines();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Body of the writer thread.
+	 */
+	private void writeLines() {
+		try {
+			int[] line;
+			while ((line = full.take()) != END) {
+				it.setFrom(line);
+				free.put(line);
+			}
+		} catch (Throwable e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Adds the next line of the image to the queue. The line is copied, so it
+	 * can be modified as soon as this method returns.
+	 * 
+	 * @param line is the line of the image
+	 * @throws IOException if the writer thread has failed
+	 */
+	public void write(int[] line) throws IOException {
+		try {
+			int[] buffer;
+			while ((buffer = free.poll(10, TimeUnit.MILLISECONDS)) == null) {
+				checkError();
+			}
+			System.arraycopy(line, 0, buffer, 0, buffer.length);
+			full.put(buffer);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the image", e);
+		}
+	}
+
+	/**
+	 * Waits until all the lines have been written and stops the writer thread.
+	 * 
+	 * @throws IOException if the writer thread has failed
+	 */
+	public void close() throws IOException {
+		try {
+			full.put(END);
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the image", e);
+		}
+		checkError();
+	}
+
+	/**
+	 * Throws the error of the writer thread, if any.
+	 * 
+	 * @throws IOException if the writer thread has failed
+	 */
+	private void checkError() throws IOException {
+		if (error != null) {
+			throw new IOException("Can not write the image: " + error.getMessage(), error);
+		}
+	}
+}
@@ -159,8 +159,10 @@ public class Parameters {
 	 * @param generateAll indicates if the variables of an instance of this class must
 	 * be set by reading the optionsFile or not.
 	 * @throws IOException when something goes wrong and read must be stopped
+	 * @throws ParameterException when an invalid parameter is detected
 	 */
-	public Parameters(String optionString, int[] imageGeometry, boolean generateAll, boolean debugMode, boolean pedantic) throws IOException {
+	public Parameters(String optionString, int[] imageGeometry, boolean generateAll, boolean debugMode, boolean pedantic) 
+					throws IOException, ParameterException {
 		this.imageGeometry = imageGeometry;
 		property = new Properties();
 		if(optionString == null) {
@@ -174,14 +176,8 @@ public class Parameters {
 		if(debugMode) {
 		    debugInfo();
 		}
-		try {
-			
-			if(generateAll) {
-				generateVariables();
-			}
-		} catch (ParameterException e) {
-			e.printStackTrace();
-			System.exit(-1);
+		if(generateAll) {
+			generateVariables();
 		}
 
 	}
@@ -196,9 +192,10 @@ public class Parameters {
 	 * @param generateAll indicates if the variables of an instance of this class must
 	 * be set by reading the optionsFile or not.
 	 * @throws IOException when something goes wrong and read must be stopped
+	 * @throws ParameterException when an invalid parameter is detected
 	 */
 	public Parameters(FileInputStream file, int[] imageGeometry, boolean generateAll, boolean debugMode, boolean pedantic)
-					throws IOException {
+					throws IOException, ParameterException {
 		this.imageGeometry = imageGeometry;
 		property = new Properties();
 
@@ -210,14 +207,8 @@ public class Parameters {
 		if(file != null && debugMode) {
 			debugInfo();
 		}
-		try {
-			
-			if(generateAll) {
-				generateVariables();
-			}
-		} catch (ParameterException e) {
-			e.printStackTrace();
-			System.exit(-1);
+		if(generateAll) {
+			generateVariables();
 		}
 
 	}
@@ -51,13 +51,14 @@ public class Parser extends BaseArgumentsParser {
 			},
 
 			{"-i", "--inputImage", "{string}", "", "1", "1",
-				"It must be a raw image"
+				"It must be a raw image. When it is \"-\" the input is read from the standard input."
 			},
 
 			{"-o", "--outputFile", "{string}", "", "1", "1",
 				"Output file.\n"
 				+ "COMPRESSING: Output file name without extension.\n"
-				+ "DECOMPRESSING: Output image file WITH extension."
+				+ "DECOMPRESSING: Output image file WITH extension.\n"
+				+ "When it is \"-\" the output is written to the standard output."
 			},
 
 			{"-ig", "--inputImageGeometry", "{int int int int int}", "", "1", "1",
@@ -126,6 +127,36 @@ public class Parser extends BaseArgumentsParser {
 			},
 			{"-t", "--time", "", "", "0", "1", 
 				"If set, emporda outputs the time used in the predictor."
+			},
+			{"-th", "--threads", "{int}", "", "0", "1", 
+				"Number of threads used to compute the prediction residuals " +
+						"in compression mode. Bands are predicted in parallel only in " +
+						"BSQ sample encoding order, the output is the same for any value. " +
+						"This value is 1 by default."
+			},
+			{"-pl", "--pipeline", "", "", "0", "1", 
+				"If set, the prediction and the entropy coding are done in " +
+						"two different threads when compressing, and the decoded image " +
+						"is written in a different thread when decompressing. " +
+						"The output is the same."
+			},
+			{"-cm", "--cache-memory", "{int}", "", "0", "1", 
+				"Megabytes of memory used to cache the image file when it is " +
+						"not read through a memory mapping, for instance when the " +
+						"decompressed image is written. A bigger cache speeds up " +
+						"BIL and BIP images. This value is 16 by default."
+			},
+			{"-nt", "--no-transpose", "", "", "0", "1", 
+				"If set, when the sample order of the image is not the sample " +
+						"encoding order, the image is read directly instead of being " +
+						"transposed first to a temporary file next to the output file. " +
+						"It only can be used in compression mode."
+			},
+			{"-pf", "--prefetch", "{int}", "", "0", "1", 
+				"Number of blocks of 4 MB of the input image read ahead in a " +
+						"background thread when compressing. It helps when the image " +
+						"is in a slow or network file system. This value is 0 " +
+						"(no read ahead) by default."
 			}
 	};
 
@@ -146,6 +177,12 @@ public class Parser extends BaseArgumentsParser {
 	private int bitCost = 0; //bit cost
 	private boolean pedantic = false; // pedantic mode
 	private boolean time = false; // pedantic mode
+	private int threads = 1; // threads used by the coder
+	private boolean pipeline = false; // prediction and entropy coding in different threads
+	private int cacheMemory = 0; // megabytes of the image cache
+	private boolean cacheMemorySet = false; // the image cache has been set
+	private boolean noTranspose = false; // the image is not transposed before coding it
+	private int prefetch = 0; // blocks of the image read ahead
 	
 	/** Receives program arguments and parses it, setting to arguments variables.
 	 *
@@ -262,6 +299,22 @@ public class Parser extends BaseArgumentsParser {
 		case 17: // -t, --time
 			time = true;
 			break;
+		case 18: // -th, --threads
+			threads = parseInteger(options);
+			break;
+		case 19: // -pl, --pipeline
+			pipeline = true;
+			break;
+		case 20: // -cm, --cache-memory
+			cacheMemory = parseInteger(options);
+			cacheMemorySet = true;
+			break;
+		case 21: // -nt, --no-transpose
+			noTranspose = true;
+			break;
+		case 22: // -pf, --prefetch
+			prefetch = parseInteger(options);
+			break;
 			
 		default:
 			throw new ParameterException("Unknown Parameter ");
@@ -488,5 +541,60 @@ public class Parser extends BaseArgumentsParser {
 		return time;
 	}
 	
+	/**
+	 * Getter for threads
+	 * @return threads
+	 */
+	public int getThreads() {
+		if (threads < 1) {
+			System.err.println(new ParameterException("threads value must be bigger than 0").getMessage());
+			System.exit(-1);
+		}
+		return threads;
+	}
+	
+	/**
+	 * Getter for pipeline
+	 * @return pipeline
+	 */
+	public boolean getPipeline() {
+		return pipeline;
+	}
+	
+	/**
+	 * Getter for cacheMemory
+	 * @return cacheMemory in megabytes, or 0 if it has not been set
+	 */
+	public int getCacheMemory() {
+		if (cacheMemorySet && cacheMemory < 1) {
+			System.err.println(new ParameterException("cache memory value must be bigger than 0").getMessage());
+			System.exit(-1);
+		}
+		return cacheMemory;
+	}
+	
+	/**
+	 * Getter for noTranspose
+	 * @return noTranspose
+	 */
+	public boolean getNoTranspose() {
+		if (action == 1 && noTranspose == true) {
+			System.err.println(new ParameterException("Option -nt can only be set in compression mode").getMessage());
+			System.exit(-1);
+		}
+		return noTranspose;
+	}
+	
+	/**
+	 * Getter for prefetch
+	 * @return prefetch
+	 */
+	public int getPrefetch() {
+		if (prefetch < 0) {
+			System.err.println(new ParameterException("prefetch value can not be negative").getMessage());
+			System.exit(-1);
+		}
+		return prefetch;
+	}
+	
 }
-
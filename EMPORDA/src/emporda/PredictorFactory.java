@@ -0,0 +1,72 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+import GiciException.ParameterException;
+
+/**
+ * Builds the predictor that corresponds to the prediction mode and the local sum mode
+ * set by the user. The choice is done once, when the coder or the decoder starts.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class PredictorFactory {
+
+	/**
+	 * Returns a predictor for the prediction mode and the local sum mode of the parameters.
+	 *
+	 * @param parameters all the information about the compression process
+	 * @param time indicates if the time used by the predictor must be shown
+	 * @return the predictor
+	 * 
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public static Predictor getPredictor(Parameters parameters, boolean time) throws ParameterException {
+		if (parameters.predictionMode == CONS.FULL_PRED_MODE) {
+			if (parameters.localSumMode == CONS.NEIGHBOR_ORIENTED_SUM) {
+				return new FullNeighborPredictor(parameters, time);
+			} else {
+				return new FullColumnPredictor(parameters, time);
+			}
+		} else {
+			if (parameters.localSumMode == CONS.NEIGHBOR_ORIENTED_SUM) {
+				return new ReducedNeighborPredictor(parameters, time);
+			} else {
+				return new ReducedColumnPredictor(parameters, time);
+			}
+		}
+	}
+
+	/**
+	 * The default constructor is overwritten because it is not necessary create an object of this class.
+	 */
+	private PredictorFactory() {}
+}
@@ -0,0 +1,108 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+import GiciException.ParameterException;
+
+/**
+ * Predictor of the Recommended Standard MHDC-123 White Book for reduced prediction mode and column oriented local sums.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public final class ReducedColumnPredictor extends AbstractPredictor {
+
+	/**
+	 * Constructor of ReducedColumnPredictor.
+	 *
+	 * @param parameters all the information about the compression process
+	 * @param time indicates if the time used by the predictor must be shown
+	 * 
+	 * @throws ParameterException when an invalid parameter is detected
+	 */
+	public ReducedColumnPredictor(Parameters parameters, boolean time) throws ParameterException {
+		super(parameters, time);
+	}
+
+	/**
+	 * Return the local sum for the sample s[y][x] of the band s.
+	 * x and y cannot both be 0
+	 * 
+	 * @param s is a band of the image
+	 * @param y is the row of the sample
+	 * @param x is the column of the sample
+	 * @param lineOffset is the position of line y in s
+	 * @return the local sum for the sample s[y][x] of the band s
+	 */
+	protected int getLocalSum(int s[][], int y, int x, int lineOffset) {
+		return getColumnOrientedSum(s, y, x, lineOffset);
+	}
+
+	/**
+	 * Calculates the local sum and the local difference vector for the sample s[z][y][x].
+	 * x and y cannot both be 0
+	 * 
+	 * @param s is the image
+	 * @param z is the band of the sample
+	 * @param y is the row of the sample
+	 * @param x is the column of the sample
+	 * @param bandOffset is the position of band z in s
+	 * @param lineOffset is the position of line y in s
+	 * @param position is the position of the sample in the ring buffer planes
+	 */
+	protected void calculateLocalDifference(int s[][][], int z, int y, int x, int bandOffset, int lineOffset, int position) {
+		long[] diffs = diffVector[z];
+		int[][] previous = previousPlanes[z];
+		for (int i = 0; i < previous.length; i++) {
+			diffs[i] = previous[i][position];
+		}
+		localSum = getColumnOrientedSum(s[bandOffset], y, x, lineOffset);
+	}
+
+	/**
+	 * Calculates the local sum and the local difference vector for the interior
+	 * sample s[z][y][x], without checking the borders of the image.
+	 * y must be greater than 0 and x must be between 1 and width - 2
+	 * 
+	 * @param current is the line y of band z
+	 * @param above is the line y - 1 of band z
+	 * @param z is the band of the sample
+	 * @param x is the column of the sample
+	 * @param position is the position of the sample in the ring buffer planes
+	 */
+	protected void calculateInteriorLocalDifference(int current[], int above[], int z, int x, int position) {
+		long[] diffs = diffVector[z];
+		int[][] previous = previousPlanes[z];
+		for (int i = 0; i < previous.length; i++) {
+			diffs[i] = previous[i][position];
+		}
+		localSum = above[x] << 2;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of mapped residuals.
+ * Every entry is the mapped residual of a sample together with its position t
+ * in the band and its band z. It connects the prediction thread of the coder,
+ * that calls {@link #put}, with the entropy coding thread, that calls
+ * {@link #consume}. A thread that has to wait for the other one is parked
+ * for a short time instead of spinning.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class ResidualRingBuffer {
+
+	/**
+	 * Receives the entries read from the buffer.
+	 */
+	public interface Sink {
+		/**
+		 * Codes the mapped residual of sample t of band z.
+		 * 
+		 * @param value is the mapped residual
+		 * @param t is the position of the sample in the band
+		 * @param z is the band of the sample
+		 * @throws IOException if the residual can not be coded
+		 */
+		void codeResidual(int value, int t, int z) throws IOException;
+	}
+
+	/**
+	 * Time that a thread waiting for the other one is parked before it
+	 * checks the buffer again
+	 */
+	private static final long WAIT_NANOS = 50000;
+
+	private final int[] values;
+	private final int[] positions;
+	private final int[] bands;
+	private final int mask;
+
+	/**
+	 * Number of entries written by the producer and read by the consumer
+	 */
+	private final AtomicLong tail = new AtomicLong(0);
+	private final AtomicLong head = new AtomicLong(0);
+
+	/**
+	 * Copies of head and tail owned by the producer and the consumer, that
+	 * avoid reading the atomic variables for every entry
+	 */
+	private long cachedHead = 0;
+	private long cachedTail = 0;
+
+	private volatile boolean closed = false;
+	private volatile Throwable error = null;
+
+	/**
+	 * Threads parked waiting for entries and for free entries
+	 */
+	private volatile Thread consumer = null;
+	private volatile Thread producer = null;
+
+	/**
+	 * Constructor of ResidualRingBuffer.
+	 * 
+	 * @param capacity is the number of entries of the buffer, it must be a power of 2
+	 */
+	public ResidualRingBuffer(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("The capacity of the buffer must be a power of 2");
+		}
+		values = new int[capacity];
+		positions = new int[capacity];
+		bands = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Adds an entry to the buffer, waiting while it is full. Only the producer
+	 * thread can call it.
+	 * 
+	 * @param value is the mapped residual
+	 * @param t is the position of the sample in the band
+	 * @param z is the band of the sample
+	 * @throws IOException if the consumer has stopped, with the error that stopped it
+	 */
+	public void put(int value, int t, int z) throws IOException {
+		long position = tail.get();
+		if (position - cachedHead > mask) {
+			cachedHead = head.get();
+			while (position - cachedHead > mask) {
+				if (error != null) {
+					if (error instanceof IOException) {
+						throw (IOException) error;
+					}
+					throw new IOException("The consumer of the buffer has stopped: " + error.getMessage(), error);
+				}
+				producer = Thread.currentThread();
+				LockSupport.parkNanos(this, WAIT_NANOS);
+				cachedHead = head.get();
+			}
+		}
+		int i = (int) position & mask;
+		values[i] = value;
+		positions[i] = t;
+		bands[i] = z;
+		tail.lazySet(position + 1);
+	}
+
+	/**
+	 * Indicates that the producer will not add more entries.
+	 */
+	public void close() {
+		closed = true;
+		wake(consumer);
+	}
+
+	/**
+	 * Indicates that the consumer has stopped, so the producer does not wait
+	 * for free entries anymore and raises the error from then on.
+	 * 
+	 * @param cause is the error that stopped the consumer
+	 */
+	public void abort(Throwable cause) {
+		error = cause;
+		wake(producer);
+	}
+
+	/**
+	 * Unparks a thread waiting on the buffer, if any.
+	 * 
+	 * @param thread is the waiting thread, or null
+	 */
+	private static void wake(Thread thread) {
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Reads all the entries of the buffer in order and gives them to the sink,
+	 * until the buffer is closed and empty. Only the consumer thread can call it.
+	 * 
+	 * @param sink receives the entries
+	 * @throws IOException if the sink can not code an entry
+	 */
+	public void consume(Sink sink) throws IOException {
+		long position = head.get();
+		while (true) {
+			if (position == cachedTail) {
+				cachedTail = tail.get();
+				if (position == cachedTail) {
+					if (closed) {
+						// entries written before close are visible now
+						cachedTail = tail.get();
+						if (position == cachedTail) {
+							return;
+						}
+					} else {
+						consumer = Thread.currentThread();
+						LockSupport.parkNanos(this, WAIT_NANOS);
+						continue;
+					}
+				}
+			}
+			for (; position < cachedTail; position++) {
+				int i = (int) position & mask;
+				sink.codeResidual(values[i], positions[i], bands[i]);
+			}
+			head.lazySet(position);
+		}
+	}
+}
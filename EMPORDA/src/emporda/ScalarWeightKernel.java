@@ -0,0 +1,81 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+import GiciMath.IntegerMath;
+
+/**
+ * Scalar implementation of {@link WeightKernel}. It is always available and is
+ * the reference for the other implementations.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public final class ScalarWeightKernel implements WeightKernel {
+
+	/**
+	 * Returns the dot product of the first length components of the weight
+	 * vector and the local difference vector.
+	 * 
+	 * @param weights is the weight vector
+	 * @param diffs is the local difference vector
+	 * @param length is the number of components used
+	 * @return the dot product, with the overflow of the long arithmetic
+	 */
+	public long dotProduct(long[] weights, long[] diffs, int length) {
+		long d_aprox = 0;
+		for (int i = 0; i < length; i++) {
+			d_aprox += weights[i]*diffs[i];
+		}
+		return d_aprox;
+	}
+
+	/**
+	 * Updates the first length components of the weight vector.
+	 * 
+	 * @param weights is the weight vector
+	 * @param diffs is the local difference vector
+	 * @param length is the number of components used
+	 * @param sign is the sign of the scaled prediction error (1 or -1)
+	 * @param scalingExponent is the weight update scaling exponent
+	 * @param weightMin is the minimum value of a weight component
+	 * @param weightMax is the maximum value of a weight component
+	 */
+	public void updateWeights(long[] weights, long[] diffs, int length, int sign, long scalingExponent, int weightMin, int weightMax) {
+		long tmp;
+		for (int i = 0; i < length; i++) {
+			tmp = (scalingExponent < 0)
+					? sign*diffs[i] << -scalingExponent
+					: sign*diffs[i] >> scalingExponent;
+			tmp = tmp + 1 >> 1;
+			weights[i] = IntegerMath.clip(weights[i] + tmp, weightMin, weightMax);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementation of {@link WeightKernel} with the incubator Vector API. The
+ * results are the same as the ones of {@link ScalarWeightKernel}: the dot product
+ * is done with the overflow of the long arithmetic, so the order of the sums
+ * does not change it, and the lanes of the weight update are independent.
+ * The class can only be loaded when the module jdk.incubator.vector is present
+ * (java --add-modules jdk.incubator.vector), {@link WeightKernelFactory} falls
+ * back to the scalar kernel otherwise.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public final class VectorWeightKernel implements WeightKernel {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	/**
+	 * Returns the dot product of the first length components of the weight
+	 * vector and the local difference vector.
+	 * 
+	 * @param weights is the weight vector
+	 * @param diffs is the local difference vector
+	 * @param length is the number of components used
+	 * @return the dot product, with the overflow of the long arithmetic
+	 */
+	public long dotProduct(long[] weights, long[] diffs, int length) {
+		int i = 0;
+		long d_aprox = 0;
+		int bound = SPECIES.loopBound(length);
+		if (bound > 0) {
+			LongVector acc = LongVector.zero(SPECIES);
+			for (; i < bound; i += SPECIES.length()) {
+				LongVector w = LongVector.fromArray(SPECIES, weights, i);
+				LongVector d = LongVector.fromArray(SPECIES, diffs, i);
+				acc = w.mul(d).add(acc);
+			}
+			d_aprox = acc.reduceLanes(VectorOperators.ADD);
+		}
+		for (; i < length; i++) {
+			d_aprox += weights[i]*diffs[i];
+		}
+		return d_aprox;
+	}
+
+	/**
+	 * Updates the first length components of the weight vector.
+	 * 
+	 * @param weights is the weight vector
+	 * @param diffs is the local difference vector
+	 * @param length is the number of components used
+	 * @param sign is the sign of the scaled prediction error (1 or -1)
+	 * @param scalingExponent is the weight update scaling exponent
+	 * @param weightMin is the minimum value of a weight component
+	 * @param weightMax is the maximum value of a weight component
+	 */
+	public void updateWeights(long[] weights, long[] diffs, int length, int sign, long scalingExponent, int weightMin, int weightMax) {
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		boolean left = scalingExponent < 0;
+		long shift = left ? -scalingExponent : scalingExponent;
+		for (; i < bound; i += SPECIES.length()) {
+			LongVector d = LongVector.fromArray(SPECIES, diffs, i);
+			if (sign < 0) {
+				d = d.neg();
+			}
+			d = left ? d.lanewise(VectorOperators.LSHL, shift) : d.lanewise(VectorOperators.ASHR, shift);
+			d = d.add(1).lanewise(VectorOperators.ASHR, 1);
+			LongVector.fromArray(SPECIES, weights, i).add(d)
+				.max(weightMin).min(weightMax)
+				.intoArray(weights, i);
+		}
+		long tmp;
+		for (; i < length; i++) {
+			tmp = left
+					? sign*diffs[i] << shift
+					: sign*diffs[i] >> shift;
+			tmp = tmp + 1 >> 1;
+			long w = weights[i] + tmp;
+			weights[i] = w < weightMin ? weightMin : (w > weightMax ? weightMax : w);
+		}
+	}
+}
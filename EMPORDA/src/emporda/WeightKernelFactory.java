@@ -0,0 +1,84 @@
+/*
+ * EMPORDA Software - More than an implementation of MHDC Recommendation for Image Data Compression
+ * Copyright (C) 2011  Group on Interactive Coding of Images (GICI)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Group on Interactive Coding of Images (GICI)
+ * Department of Information and Communication Engineering
+ * Autonomous University of Barcelona
+ * 08193 - Bellaterra - Cerdanyola del Valles (Barcelona)
+ * Spain
+ *
+ * http://gici.uab.es
+ * http://sourceforge.net/projects/emporda
+ * gici-info@deic.uab.es
+ */
+
+package emporda;
+
+/**
+ * Builds the {@link WeightKernel} used by the predictor. The vector kernel is
+ * used when the module jdk.incubator.vector is present in the running JVM and
+ * the system property emporda.vector is not set to false, otherwise the scalar
+ * kernel is used. The choice is done once, the first time a kernel is requested.
+ * <p>
+ *
+ * @author Group on Interactive Coding of Images (GICI)
+ * @version 1.0
+ */
+public class WeightKernelFactory {
+
+	private static WeightKernel kernel = null;
+
+	/**
+	 * Returns the weight kernel of the running JVM.
+	 *
+	 * @return the weight kernel
+	 */
+	public static synchronized WeightKernel getWeightKernel() {
+		if (kernel == null) {
+			kernel = loadVectorKernel();
+			if (kernel == null) {
+				kernel = new ScalarWeightKernel();
+			}
+		}
+		return kernel;
+	}
+
+	/**
+	 * Tries to load the vector kernel.
+	 *
+	 * @return the vector kernel or null if it is not available
+	 */
+	private static WeightKernel loadVectorKernel() {
+		if (!Boolean.parseBoolean(System.getProperty("emporda.vector", "true"))) {
+			return null;
+		}
+		try {
+			Class<?> c = Class.forName("emporda.VectorWeightKernel");
+			return (WeightKernel) c.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			return null;
+		} catch (LinkageError e) {
+			// the module jdk.incubator.vector is not present
+			return null;
+		}
+	}
+
+	/**
+	 * The default constructor is overwritten because it is not necessary create an object of this class.
+	 */
+	private WeightKernelFactory() {}
+}